@@ -4,17 +4,23 @@ import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
  *  Classe qui représente un index de nom d'arrêts dans lequel
- *  il est possible d'effectuer des recherches
+ *  il est possible d'effectuer des recherches.
+ *  Les noms sont indexés par leurs n-grammes (de 1 à 3 caractères, sans casse ni accents), ce qui permet
+ *  de ne tester les expressions régulières de la requête que sur les noms qui contiennent tous
+ *  les n-grammes de celle-ci, et donc de ne pas parcourir tous les noms à chaque frappe
  * @author Yoann Salamin (390522)
  * @author Axel Verga (398787)
  */
 public final class StopIndex {
 
     private static final Map<Character, String> MAP_EQUIVALENCES;
+    // Caractère sans accent de chacun des caractères accentués des classes d'équivalence
+    private static final Map<Character, Character> MAP_FOLDING;
     private final Map<String, String> alternateNamesMap;
 
     public static final int BEGIN_OR_SPACE_MULTIPLIER = 4;
@@ -22,6 +28,17 @@ public final class StopIndex {
 
     private final List<String> stopsList;
 
+    // Longueur maximale des n-grammes indexés
+    private static final int MAX_GRAM_LENGTH = 3;
+    // Nombre de bits d'un caractère (ASCII) dans le code d'un n-gramme
+    private static final int GRAM_CHAR_BITS = 7;
+
+    // Noms indexés : les noms d'arrêts, puis les noms alternatifs, dans l'ordre dans lequel ils
+    // étaient parcourus sans index, afin que le classement des arrêts de même score ne change pas
+    private final String[] names;
+    // Identifiants (index dans names, croissants) des noms contenant chaque n-gramme, selon son code
+    private final Map<Integer, int[]> namesByGram;
+
     // Bloc statique pour initialiser le map
     static {
         Map<Character, String> m = new TreeMap<>();
@@ -32,6 +49,14 @@ public final class StopIndex {
         m.put('o', "[oóòôö]");
         m.put('u', "[uúùûü]");
         MAP_EQUIVALENCES = Collections.unmodifiableMap(m);
+
+        Map<Character, Character> folding = new HashMap<>();
+        for (Map.Entry<Character, String> e : m.entrySet()) {
+            String equivalents = e.getValue();
+            // On ignore les crochets de la classe de caractères
+            for (int i = 1; i < equivalents.length() - 1; i++) folding.put(equivalents.charAt(i), e.getKey());
+        }
+        MAP_FOLDING = Collections.unmodifiableMap(folding);
     }
 
     /**
@@ -45,6 +70,26 @@ public final class StopIndex {
         this.stopsList = List.copyOf(stopsList);
         this.alternateNamesMap = Map.copyOf(alternateNamesMap);
 
+        List<String> allNames = new ArrayList<>(this.stopsList);
+        for (Map.Entry<String, String> entry : this.alternateNamesMap.entrySet()) allNames.add(entry.getKey());
+        this.names = allNames.toArray(new String[0]);
+
+        // Construction des listes de noms de chaque n-gramme. Les noms étant parcourus dans l'ordre,
+        // chaque liste est triée, et un nom n'y est ajouté qu'une fois
+        Map<Integer, GramPostings> postings = new HashMap<>();
+        for (int id = 0; id < names.length; id++) {
+            String folded = fold(names[id]);
+            for (int start = 0; start < folded.length(); start++) {
+                for (int end = start + 1; end <= Math.min(start + MAX_GRAM_LENGTH, folded.length()); end++) {
+                    // Les n-grammes contenant un caractère non indexable ne sont jamais recherchés
+                    if (!isIndexable(folded.charAt(end - 1))) break;
+                    postings.computeIfAbsent(gramCode(folded, start, end), k -> new GramPostings()).add(id);
+                }
+            }
+        }
+        Map<Integer, int[]> byGram = new HashMap<>(postings.size() * 2);
+        for (Map.Entry<Integer, GramPostings> e : postings.entrySet()) byGram.put(e.getKey(), e.getValue().toArray());
+        this.namesByGram = byGram;
     }
 
     /**
@@ -76,36 +121,100 @@ public final class StopIndex {
                 })
                 .toList();
 
-        // Filtrer et récupérer les noms dans la liste stopsList
-        Stream<String> stopsMatching = stopsList.stream()
-                .filter(stopName ->
+        // --- étape 2 : ne tester les sous-requêtes que sur les noms contenant tous leurs n-grammes ------
+        Stream<String> namesMatching = candidates(originalSubQueries)
+                .mapToObj(id -> names[id])
+                .filter(name ->
                         subQueriesWithPattern.stream().allMatch(subQueryPattern ->
-                                subQueryPattern.matcher(stopName).find())
+                                subQueryPattern.matcher(name).find())
                 );
 
-        // Filtrer la Map et récupérer les valeurs associées pour lesquelles la clé correspond
-        Stream<String> alternatesMatching = alternateNamesMap.entrySet().stream()
-                .filter(entry ->
-                        subQueriesWithPattern.stream().allMatch(subQueryPattern ->
-                                subQueryPattern.matcher(entry.getKey()).find())
-                )
-                .map(Map.Entry::getKey);
-
-        return Stream.concat(stopsMatching, alternatesMatching)
+        return namesMatching
                 // on enlève les doublons
                 .distinct()
-                // on trie avec la méthode définie ci-dessus
-                .sorted((stopName1, stopName2) -> Integer.compare(
-                        score(stopName2, subQueriesWithPattern),
-                        score(stopName1, subQueriesWithPattern)))
+                // on calcule le score de chaque nom une seule fois, puis on trie (de manière stable)
+                // par score décroissant avec la méthode définie ci-dessous
+                .map(name -> new ScoredName(name, score(name, subQueriesWithPattern)))
+                .sorted((name1, name2) -> Integer.compare(name2.score(), name1.score()))
                 // on remplace les alternates par le vrai nom
-                .map(name -> alternateNamesMap.getOrDefault(name, name))
+                .map(scored -> alternateNamesMap.getOrDefault(scored.name(), scored.name()))
                 // on enlève encore les doublons
                 .distinct()
                 .limit(maxNumbersOfStopsToReturn)
                 .collect(Collectors.toList());
     }
 
+    // Nom et son score de compatibilité avec la requête
+    private record ScoredName(String name, int score) {}
+
+    /**
+     * Retourne, dans l'ordre croissant, les identifiants des noms qui contiennent tous les n-grammes
+     * des sous-requêtes données (sans casse ni accents). Tout nom correspondant aux sous-requêtes
+     * en fait partie, car un caractère d'une sous-requête ne correspond qu'à des caractères
+     * qui lui sont identiques une fois la casse et les accents retirés
+     * @param subQueries les sous-requêtes
+     * @return les identifiants des noms candidats
+     */
+    private IntStream candidates(String[] subQueries) {
+
+        // Pour chaque suite de caractères indexables d'une sous-requête : tous ses trigrammes,
+        // ou la suite elle-même si elle est plus courte
+        Set<Integer> gramCodes = new HashSet<>();
+        for (String subQuery : subQueries) {
+            String folded = fold(subQuery);
+            int runStart = 0;
+            for (int i = 0; i <= folded.length(); i++) {
+                if (i < folded.length() && isIndexable(folded.charAt(i))) continue;
+                if (i - runStart >= MAX_GRAM_LENGTH) {
+                    for (int start = runStart; start + MAX_GRAM_LENGTH <= i; start++)
+                        gramCodes.add(gramCode(folded, start, start + MAX_GRAM_LENGTH));
+                } else if (i > runStart) {
+                    gramCodes.add(gramCode(folded, runStart, i));
+                }
+                runStart = i + 1;
+            }
+        }
+
+        if (gramCodes.isEmpty()) return IntStream.range(0, names.length);
+
+        // Intersection des listes, en commençant par la plus courte
+        List<int[]> postings = new ArrayList<>(gramCodes.size());
+        for (int gramCode : gramCodes) {
+            int[] ids = namesByGram.get(gramCode);
+            if (ids == null) return IntStream.empty();
+            postings.add(ids);
+        }
+        postings.sort(Comparator.comparingInt(ids -> ids.length));
+
+        // La liste la plus courte est copiée, car l'intersection est calculée à sa place
+        int[] candidates = postings.getFirst().clone();
+        int size = candidates.length;
+        for (int k = 1; k < postings.size() && size > 0; k++) size = intersect(candidates, size, postings.get(k));
+        return Arrays.stream(candidates, 0, size);
+    }
+
+    /**
+     * Retourne la taille de l'intersection de deux listes croissantes d'identifiants,
+     * qui est placée au début de la première
+     * @param ids la première liste, dont seuls les size premiers éléments sont considérés
+     * @param size le nombre d'éléments de la première liste
+     * @param others la seconde liste
+     * @return le nombre d'éléments de l'intersection
+     */
+    private static int intersect(int[] ids, int size, int[] others) {
+        int count = 0;
+        for (int i = 0, j = 0; i < size && j < others.length; ) {
+            if (ids[i] < others[j]) i += 1;
+            else if (ids[i] > others[j]) j += 1;
+            else {
+                ids[count++] = ids[i];
+                i += 1;
+                j += 1;
+            }
+        }
+        return count;
+    }
+
     /**
      * Calcule le score de compatibilité entre une query et un stop Name
      * @param stopName nom d'arrêt, nom de requête
@@ -146,6 +255,65 @@ public final class StopIndex {
         return finalScore;
     }
 
+    /**
+     * Retourne la chaîne donnée sans casse ni accents : chaque caractère est remplacé par sa minuscule
+     * (celle de sa majuscule, comme les comparaisons sans casse des expressions régulières),
+     * puis par son caractère sans accent s'il appartient à une classe d'équivalence
+     * @param s la chaîne
+     * @return la chaîne sans casse ni accents, de même longueur
+     */
+    private static String fold(String s) {
+        char[] folded = new char[s.length()];
+        for (int i = 0; i < folded.length; i++) {
+            char lower = Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+            folded[i] = MAP_FOLDING.getOrDefault(lower, lower);
+        }
+        return new String(folded);
+    }
+
+    /**
+     * Retourne vrai si et seulement si le caractère (sans casse ni accents) donné peut faire partie
+     * d'un n-gramme indexé : seuls les caractères ASCII le peuvent
+     * @param c le caractère
+     * @return vrai si le caractère est indexable
+     */
+    private static boolean isIndexable(char c) {
+        return c < (1 << GRAM_CHAR_BITS);
+    }
+
+    /**
+     * Retourne le code du n-gramme formé des caractères (indexables) de la chaîne donnée entre
+     * les index donnés, qui contient sa longueur et ses caractères
+     * @param s la chaîne
+     * @param start l'index du premier caractère (inclus)
+     * @param end l'index du dernier caractère (exclu)
+     * @return le code du n-gramme
+     */
+    private static int gramCode(String s, int start, int end) {
+        int code = end - start;
+        for (int i = start; i < end; i++) code = code << GRAM_CHAR_BITS | s.charAt(i);
+        return code;
+    }
+
+    /**
+     * Liste croissante d'identifiants de noms contenant un n-gramme, en construction
+     */
+    private static final class GramPostings {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        // Ajoute l'identifiant donné, s'il n'est pas déjà le dernier de la liste
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, 2 * size);
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
     /**
      * Transforme un caractère en sa représentation RE
      * @param c le char c
@@ -4,21 +4,34 @@ import ch.epfl.rechor.StopIndex;
 import ch.epfl.rechor.journey.Journey;
 import ch.epfl.rechor.journey.JourneyExtractor;
 import ch.epfl.rechor.journey.Profile;
+import ch.epfl.rechor.journey.ProfileCache;
+import ch.epfl.rechor.journey.ProfileStore;
 import ch.epfl.rechor.journey.Router;
 import ch.epfl.rechor.timetable.*;
 import ch.epfl.rechor.timetable.mapped.FileTimeTable;
 import javafx.application.Application;
 import javafx.application.Platform;
-import javafx.beans.binding.Bindings;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.Scene;
 import javafx.scene.control.SplitPane;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -33,16 +46,33 @@ public final class Main extends Application {
     private final static int STAGE_WIDTH= 800;
     private final static String NAME = "ReCHor";
     private final static String TIME_TABLE_PATH = "timetable";
-
-    // Constantes pour l'UI
-    private static final String DEPARTURE_STOP_FIELD_ID = "#depStop";
+    private final static String PROFILES_PATH = "profiles";
+    private final static int CACHED_DAYS = 3;
+    // Part du tas réservée au cache des profils, et occupation du tas au-delà de laquelle il se réduit
+    private final static double PROFILE_CACHE_HEAP_FRACTION = 0.25;
+    private final static double HEAP_PRESSURE_FRACTION = 0.8;
 
     // Attribut de classe : liste des voyages observables
     private ObservableValue<List<Journey>> journeyList;
 
-    // Cache du profil
-    private record ProfileKey(LocalDate date, int arrivalId) {}
-    private final Map<ProfileKey, Profile> profileCache = new HashMap<>();
+    // Cache du profil, dont les profils sont projetés en mémoire depuis le stock sur disque,
+    // qui survit à l'application, peut être partagé par plusieurs processus et est rempli
+    // à l'avance par PrecomputeJob : un profil précalculé est alors lu, sans aucun calcul.
+    // L'application ne fait que lire le stock : un profil qui n'y est pas est calculé en mémoire,
+    // sans être écrit sur disque, afin que les requêtes n'attendent pas d'écriture et que le stock
+    // ne grandisse pas sans limite.
+    // Les profils sont identifiés par le contenu des données du jour, et non par la date : des jours
+    // aux données identiques partagent ainsi leurs profils. Le cache est limité à une part du tas,
+    // et se réduit lorsque le tas est presque plein
+    private record ProfileKey(String dayContentKey, int arrivalId) {}
+    private final ProfileCache<ProfileKey> profileCache = new ProfileCache<>(
+            (long) (Runtime.getRuntime().maxMemory() * PROFILE_CACHE_HEAP_FRACTION));
+
+    // Numéro de la dernière requête de l'utilisateur, et profil dont elle a besoin (ou null),
+    // qui permettent d'ignorer les voyages et d'annuler les calculs de profils devenus inutiles
+    private record ProfileQuery(LocalDate date, int arrivalId) {}
+    private final AtomicLong latestQuery = new AtomicLong();
+    private final AtomicReference<ProfileQuery> latestProfileQuery = new AtomicReference<>();
 
     /**
      * Point d'entrée de l'application
@@ -57,8 +87,16 @@ public final class Main extends Application {
     public void start(Stage primaryStage) throws Exception {
 
         // ----------- Chargement des données horaires ---------------------
-        TimeTable timeTable = new CachedTimeTable(FileTimeTable.in(Path.of(TIME_TABLE_PATH)));
+        // Les données de la veille et du lendemain de chaque jour consulté sont préchargées
+        // par un fil d'exécution d'arrière-plan, qui ne retient pas l'application à sa fermeture
+        Executor prefetchExecutor = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("prefetch").daemon().factory());
+        TimeTable timeTable = new CachedTimeTable(
+                FileTimeTable.in(Path.of(TIME_TABLE_PATH)), CACHED_DAYS, prefetchExecutor);
         Router router = new Router(timeTable);
+        profileCache.watchHeapPressure(HEAP_PRESSURE_FRACTION);
+        ProfileStore profileStore = new ProfileStore(
+                Path.of(PROFILES_PATH), ProfileStore.versionOf(Path.of(TIME_TABLE_PATH)));
 
         // Liste des arrêts
         Stations stations = timeTable.stations();
@@ -81,39 +119,73 @@ public final class Main extends Application {
         QueryUI queryUI = QueryUI.create(stopIndex); // 1)
 
         // Mise à jour de la liste des voyages
-        journeyList = Bindings.createObjectBinding(
-                ()-> {
-                    LocalDate date = queryUI.dateO().getValue();
-                    String depStop = queryUI.depStopO().getValue();
-                    String arrStop = queryUI.arrStopO().getValue();
-
-                    if (depStop.isEmpty() || arrStop.isEmpty()) {
-                        return Collections.emptyList();
-                    }
+        // Les voyages sont calculés par un fil d'exécution d'arrière-plan, afin de ne pas figer l'interface,
+        // puis publiés sur le fil de JavaFX. Un seul fil est utilisé, les calculs se succédant ainsi
+        // dans un même espace de travail du routeur. Un calcul dont la requête a changé entre-temps
+        // n'est pas publié, et le calcul de son profil est annulé s'il ne sert plus à la nouvelle requête
+        ExecutorService routingExecutor = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("routing").daemon().factory());
+        ObjectProperty<List<Journey>> journeys = new SimpleObjectProperty<>(Collections.emptyList());
+        journeyList = journeys;
 
-                    int arrId = stationId(timeTable, arrStop);
+        InvalidationListener queryListener = o -> {
+            long query = latestQuery.incrementAndGet();
+            LocalDate date = queryUI.dateO().getValue();
+            String depStop = queryUI.depStopO().getValue();
+            String arrStop = queryUI.arrStopO().getValue();
 
-                    ProfileKey profileKey = new ProfileKey(date, arrId);
-                    Profile profile = profileCache.computeIfAbsent(
-                            profileKey,
+            if (arrStop.isEmpty()) {
+                latestProfileQuery.set(null);
+                journeys.set(Collections.emptyList());
+                return;
+            }
 
-                            k -> router.profile(
-                                    date,
-                                    arrId
-                            )
-                    );
+            // Le profil ne dépend que de la date et de la gare d'arrivée : il est calculé dès que celle-ci
+            // est choisie, avant même que la gare de départ ne soit connue
+            ProfileQuery profileQuery = new ProfileQuery(date, stationId(timeTable, arrStop));
+            latestProfileQuery.set(profileQuery);
+            BooleanSupplier profileCancelled = () -> !profileQuery.equals(latestProfileQuery.get());
 
-                    return JourneyExtractor.journeys(
-                                profile,
-                                stationId(timeTable, queryUI.depStopO().getValue()
-                                )
-                        );
+            // Les voyages de la requête précédente (p. ex. vers une autre destination) ne sont plus affichés
+            // pendant le calcul de ceux de la nouvelle requête
+            journeys.set(Collections.emptyList());
 
-                },
-                queryUI.dateO(),
-                queryUI.depStopO(),
-                queryUI.arrStopO()
-        );
+            if (depStop.isEmpty()) {
+                routingExecutor.execute(() ->
+                        precompute(timeTable, profileStore, router, profileQuery, profileCancelled));
+            } else {
+                int depId = stationId(timeTable, depStop);
+                routingExecutor.execute(() -> {
+                    // Une requête déjà remplacée par une autre n'est pas calculée
+                    if (latestQuery.get() != query) return;
+
+                    List<Journey> computed;
+                    try {
+                        computed = JourneyExtractor.journeys(
+                                profile(timeTable, profileStore, router, profileQuery, profileCancelled), depId);
+                    } catch (CancellationException e) {
+                        return;
+                    } catch (RuntimeException e) {
+                        // Une requête impossible à calculer (p. ex. un jour absent de l'horaire) n'a aucun voyage
+                        computed = Collections.emptyList();
+                    }
+                    List<Journey> published = computed;
+                    Platform.runLater(() -> {
+                        if (latestQuery.get() == query) journeys.set(published);
+                    });
+                });
+            }
+
+            // Le profil du lendemain est ensuite calculé à l'avance, le fil de calcul étant sinon inoccupé,
+            // mais ce calcul est abandonné dès que l'utilisateur modifie sa requête, afin de ne pas la retarder,
+            // sauf si la nouvelle requête porte justement sur ce profil (p. ex. en passant au jour suivant)
+            ProfileQuery nextDayQuery = new ProfileQuery(date.plusDays(1), profileQuery.arrivalId());
+            routingExecutor.execute(() -> precompute(timeTable, profileStore, router, nextDayQuery,
+                    () -> latestQuery.get() != query && !nextDayQuery.equals(latestProfileQuery.get())));
+        };
+        queryUI.dateO().addListener(queryListener);
+        queryUI.depStopO().addListener(queryListener);
+        queryUI.arrStopO().addListener(queryListener);
 
 
         SummaryUI summaryUI = SummaryUI.create(journeyList, queryUI.timeO()); // 2)
@@ -135,11 +207,75 @@ public final class Main extends Application {
         primaryStage.setMinWidth(STAGE_WIDTH);
         primaryStage.setTitle(NAME);
         primaryStage.show();
+    }
 
-        if (!journeyList.getValue().isEmpty()) {
-            Platform.runLater(() -> scene.lookup(DEPARTURE_STOP_FIELD_ID).requestFocus());
+    /**
+     * Méthode privée qui retourne le profil de la requête donnée, appelée depuis le fil de calcul des voyages.
+     * Le profil est lu dans le cache, sinon dans le stock, sinon calculé
+     * @param timeTable l'horaire
+     * @param profileStore le stock de profils
+     * @param router le routeur
+     * @param profileQuery la date et la gare d'arrivée du profil
+     * @param cancelled la demande d'annulation du calcul du profil
+     * @return le profil
+     * @throws CancellationException si le calcul du profil a été annulé
+     */
+    private Profile profile(TimeTable timeTable, ProfileStore profileStore, Router router,
+                            ProfileQuery profileQuery, BooleanSupplier cancelled) {
+        LocalDate date = profileQuery.date();
+        int arrId = profileQuery.arrivalId();
+        Profile cachedProfile = profileCache.getOrCompute(
+                new ProfileKey(timeTable.dayContentKey(date), arrId),
+                k -> storedProfile(timeTable, profileStore, router, date, arrId, cancelled)
+        );
+
+        // Le profil a pu être calculé pour un autre jour de même contenu : seule sa date change
+        return cachedProfile.date().equals(date)
+                ? cachedProfile
+                : new Profile(timeTable, date, arrId, cachedProfile.stationFront());
+    }
+
+    /**
+     * Méthode privée qui calcule à l'avance (et met en cache) le profil de la requête donnée, que l'utilisateur
+     * demandera probablement, appelée depuis le fil de calcul des voyages. Un calcul annulé, ou portant
+     * sur un jour absent de l'horaire, est simplement abandonné
+     * @param timeTable l'horaire
+     * @param profileStore le stock de profils
+     * @param router le routeur
+     * @param profileQuery la date et la gare d'arrivée du profil
+     * @param cancelled la demande d'annulation du calcul du profil
+     */
+    private void precompute(TimeTable timeTable, ProfileStore profileStore, Router router,
+                            ProfileQuery profileQuery, BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) return;
+        try {
+            profile(timeTable, profileStore, router, profileQuery, cancelled);
+        } catch (CancellationException | UncheckedIOException e) {
+            // Le profil sera calculé s'il est réellement demandé
         }
+    }
 
+    /**
+     * Méthode privée qui retourne le profil de la date et de la gare d'arrivée données, lu dans le stock
+     * de profils s'il y est, ou sinon calculé en mémoire (sans être ajouté au stock)
+     * @param timeTable l'horaire
+     * @param profileStore le stock de profils
+     * @param router le routeur
+     * @param date la date
+     * @param arrId l'id de la gare d'arrivée
+     * @param cancelled la demande d'annulation du calcul du profil
+     * @return le profil
+     * @throws CancellationException si le calcul du profil a été annulé
+     */
+    private static Profile storedProfile(TimeTable timeTable, ProfileStore profileStore, Router router,
+                                         LocalDate date, int arrId, BooleanSupplier cancelled) {
+        try {
+            Optional<Profile> stored = profileStore.load(timeTable, date, arrId);
+            if (stored.isPresent()) return stored.get();
+        } catch (IOException e) {
+            // Le stock n'est qu'une optimisation : s'il est inutilisable, on calcule simplement le profil
+        }
+        return router.profile(date, arrId, cancelled);
     }
 
     /**
@@ -0,0 +1,210 @@
+package ch.epfl.rechor.journey;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static ch.epfl.rechor.journey.PackedCriteria.MASK_12_BITS;
+import static ch.epfl.rechor.journey.PackedCriteria.MASK_7_BITS;
+import static ch.epfl.rechor.journey.PackedCriteria.SHIFT_ARR_MINS;
+import static ch.epfl.rechor.journey.PackedCriteria.SHIFT_CHANGES;
+import static ch.epfl.rechor.journey.PackedCriteria.SHIFT_DEP_MINS;
+
+/**
+ * Liste immuable des frontières de Pareto des gares d'un profil, sous forme compressée, destinée aux profils
+ * conservés longtemps en mémoire. Les frontières sont décodées à chaque appel de get.
+ * Les tuples d'une frontière sont triés par heure de départ décroissante (l'ordre de ParetoFront),
+ * et chacun est codé par rapport au précédent, au moyen de trois entiers de longueur variable (varint,
+ * 7 bits par octet), qui tiennent le plus souvent sur un ou deux octets :
+ * <ul>
+ *     <li>l'écart entre les compléments des heures de départ (qui est positif ou nul, la frontière étant triée),
+ *     suivi sur 3 bits du nombre de changements,</li>
+ *     <li>l'écart entre les heures d'arrivée, en codage zigzag (il peut être négatif),
+ *     suivi sur 4 bits du nombre d'arrêts intermédiaires de la charge utile (ses 8 bits de poids faible),</li>
+ *     <li>l'écart entre les liaisons de la charge utile (ses 24 bits de poids fort), en codage zigzag.</li>
+ * </ul>
+ * Un nombre de changements (resp. d'arrêts) trop grand pour ses 3 (resp. 4) bits les remplit de 1,
+ * et son excédent suit, dans un entier supplémentaire.
+ * Chaque frontière commence par son nombre de tuples, et une table donne l'index de son premier octet.
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+final class CompressedStationFronts extends ImmutableStationFronts {
+
+    // Octets de toutes les frontières, à la suite
+    private final byte[] bytes;
+
+    // Index du premier octet de la frontière de chaque gare
+    private final int[] offsets;
+
+    // Nombre de bits, et valeur maximale, du nombre de changements et du nombre d'arrêts intermédiaires,
+    // lorsqu'ils sont placés après l'écart entre heures de départ (resp. d'arrivée)
+    private static final int CHANGES_BITS = 3;
+    private static final int MAX_INLINE_CHANGES = (1 << CHANGES_BITS) - 1;
+    private static final int STOPS_BITS = 4;
+    private static final int MAX_INLINE_STOPS = (1 << STOPS_BITS) - 1;
+
+    /**
+     * Constructeur privé qui stocke les tableaux donnés sans les copier
+     * @param bytes octets de toutes les frontières, à la suite
+     * @param offsets index du premier octet de la frontière de chaque gare
+     */
+    private CompressedStationFronts(byte[] bytes, int[] offsets) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Fonction qui compresse les frontières données
+     * @param stationFronts frontières de Pareto des gares
+     * @return la liste compressée, qui contient les mêmes tuples dans le même ordre
+     */
+    static CompressedStationFronts of(List<ParetoFront> stationFronts) {
+        if (stationFronts instanceof CompressedStationFronts compressed) return compressed;
+
+        Encoder encoder = new Encoder();
+        int[] offsets = new int[stationFronts.size()];
+        long[] tuples = new long[16];
+        for (int stationId = 0; stationId < offsets.length; stationId++) {
+            ParetoFront front = stationFronts.get(stationId);
+            offsets[stationId] = encoder.size;
+
+            // On récupère d'abord les tuples, pour connaître leur nombre
+            if (tuples.length < front.size()) tuples = new long[Math.max(front.size(), 2 * tuples.length)];
+            int[] count = {0};
+            long[] destination = tuples;
+            front.forEach(t -> destination[count[0]++] = t);
+
+            encoder.writeVarint(count[0]);
+            long previous = 0;
+            for (int i = 0; i < count[0]; i++) {
+                long tuple = tuples[i];
+                int changes = changesField(tuple);
+                int stops = (int) tuple & 0xFF;
+                encoder.writeVarint(
+                        (depField(tuple) - depField(previous)) << CHANGES_BITS | Math.min(changes, MAX_INLINE_CHANGES));
+                if (changes >= MAX_INLINE_CHANGES) encoder.writeVarint(changes - MAX_INLINE_CHANGES);
+                encoder.writeVarint(
+                        zigzag(arrField(tuple) - arrField(previous)) << STOPS_BITS | Math.min(stops, MAX_INLINE_STOPS));
+                if (stops >= MAX_INLINE_STOPS) encoder.writeVarint(stops - MAX_INLINE_STOPS);
+                encoder.writeVarint(zigzag(connectionOf(tuple) - connectionOf(previous)));
+                previous = tuple;
+            }
+        }
+        return new CompressedStationFronts(Arrays.copyOf(encoder.bytes, encoder.size), offsets);
+    }
+
+    /**
+     * Fonction qui retourne le nombre d'octets occupés par les frontières compressées
+     * (sans compter la table des index)
+     * @return le nombre d'octets des frontières compressées
+     */
+    int byteSize() {
+        return bytes.length;
+    }
+
+    @Override
+    public ParetoFront get(int stationId) {
+        int[] position = {offsets[Objects.checkIndex(stationId, size())]};
+        int count = readVarint(position);
+        if (count == 0) return ParetoFront.EMPTY;
+
+        long[] tuples = new long[count];
+        long dep = 0, arr = 0;
+        int connection = 0;
+        for (int i = 0; i < count; i++) {
+            int depAndChanges = readVarint(position);
+            dep += depAndChanges >>> CHANGES_BITS;
+            long changes = depAndChanges & MAX_INLINE_CHANGES;
+            if (changes == MAX_INLINE_CHANGES) changes += readVarint(position);
+
+            int arrAndStops = readVarint(position);
+            arr += unzigzag(arrAndStops >>> STOPS_BITS);
+            int stops = arrAndStops & MAX_INLINE_STOPS;
+            if (stops == MAX_INLINE_STOPS) stops += readVarint(position);
+
+            connection += unzigzag(readVarint(position));
+            tuples[i] = dep << SHIFT_DEP_MINS | arr << SHIFT_ARR_MINS | changes << SHIFT_CHANGES
+                    | Integer.toUnsignedLong(connection << 8 | stops);
+        }
+        return ParetoFront.view(tuples, 0, count);
+    }
+
+    @Override
+    public int size() {
+        return offsets.length;
+    }
+
+    @Override
+    long heapBytes() {
+        return bytes.length + (long) Integer.BYTES * offsets.length;
+    }
+
+    /**
+     * Fonction qui lit un entier de longueur variable à la position donnée, et avance celle-ci
+     * @param position position de lecture (tableau d'un élément)
+     * @return l'entier lu
+     */
+    private int readVarint(int[] position) {
+        int p = position[0];
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[p++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        position[0] = p;
+        return value;
+    }
+
+    // Champs bruts d'un tuple empaqueté, et liaison de sa charge utile
+
+    private static int depField(long tuple) {
+        return (int) ((tuple >>> SHIFT_DEP_MINS) & MASK_12_BITS);
+    }
+
+    private static int arrField(long tuple) {
+        return (int) ((tuple >>> SHIFT_ARR_MINS) & MASK_12_BITS);
+    }
+
+    private static int changesField(long tuple) {
+        return (int) ((tuple >>> SHIFT_CHANGES) & MASK_7_BITS);
+    }
+
+    private static int connectionOf(long tuple) {
+        return (int) tuple >>> 8;
+    }
+
+    // Codage zigzag, qui associe un petit entier positif à un entier de petite valeur absolue
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Tampon d'octets agrandi au besoin, dans lequel sont écrits des entiers de longueur variable
+     */
+    private static final class Encoder {
+        private byte[] bytes = new byte[1 << 10];
+        private int size = 0;
+
+        /**
+         * Écrit l'entier donné, considéré comme non signé, sur 1 à 5 octets
+         * @param value entier à écrire
+         */
+        private void writeVarint(int value) {
+            if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+}
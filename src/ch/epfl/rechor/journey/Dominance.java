@@ -0,0 +1,77 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.Preconditions;
+
+import static ch.epfl.rechor.journey.PackedCriteria.MASK_12_BITS;
+import static ch.epfl.rechor.journey.PackedCriteria.MASK_7_BITS;
+import static ch.epfl.rechor.journey.PackedCriteria.SHIFT_ARR_MINS;
+import static ch.epfl.rechor.journey.PackedCriteria.SHIFT_CHANGES;
+import static ch.epfl.rechor.journey.PackedCriteria.SHIFT_DEP_MINS;
+
+/**
+ * Noyaux qui testent si l'un des tuples d'un tableau domine (ou est égal à) un tuple donné,
+ * ce qu'utilise ParetoFront.Builder dans ses boucles critiques.
+ * Les champs sont comparés directement dans leur représentation empaquetée : le complément de l'heure
+ * de départ, l'heure d'arrivée décalée et le nombre de changements doivent tous être inférieurs ou égaux
+ * à ceux du tuple donné. Si le module jdk.incubator.vector est disponible (option --add-modules),
+ * les tuples sont comparés plusieurs à la fois au moyen de l'API Vector, sinon un à un.
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+final class Dominance {
+
+    /**
+     * Vrai si et seulement si le noyau vectoriel est utilisé
+     */
+    static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && !Boolean.getBoolean("rechor.noVector");
+
+    // Pour rendre la classe non instantiable
+    private Dominance() {}
+
+    /**
+     * Retourne vrai si et seulement si au moins l'un des tuples du tableau donné, entre les index donnés,
+     * domine ou est égal au tuple donné, au sens de PackedCriteria.dominatesOrIsEqual
+     * @param packedTuples tableau de tuples empaquetés
+     * @param from index du premier tuple (inclus)
+     * @param to index du dernier tuple (exclu)
+     * @param packedTuple tuple de critères empaqueté
+     * @return vrai si l'un des tuples domine ou est égal au tuple donné
+     * @throws IllegalArgumentException si l'un des tuples a une heure de départ et pas le tuple donné, ou inversement
+     */
+    static boolean anyDominatesOrIsEqual(long[] packedTuples, int from, int to, long packedTuple) {
+        return VECTORIZED
+                ? VectorDominance.anyDominatesOrIsEqual(packedTuples, from, to, packedTuple)
+                : scalarAnyDominatesOrIsEqual(packedTuples, from, to, packedTuple);
+    }
+
+    /**
+     * Version scalaire de anyDominatesOrIsEqual, qui compare les tuples un à un
+     * @param packedTuples tableau de tuples empaquetés
+     * @param from index du premier tuple (inclus)
+     * @param to index du dernier tuple (exclu)
+     * @param packedTuple tuple de critères empaqueté
+     * @return vrai si l'un des tuples domine ou est égal au tuple donné
+     * @throws IllegalArgumentException si l'un des tuples a une heure de départ et pas le tuple donné, ou inversement
+     */
+    static boolean scalarAnyDominatesOrIsEqual(long[] packedTuples, int from, int to, long packedTuple) {
+        long depField = (packedTuple >>> SHIFT_DEP_MINS) & MASK_12_BITS;
+        long arrField = (packedTuple >>> SHIFT_ARR_MINS) & MASK_12_BITS;
+        long changesField = (packedTuple >>> SHIFT_CHANGES) & MASK_7_BITS;
+
+        for (int i = from; i < to; i++) {
+            long t = packedTuples[i];
+            long tDepField = (t >>> SHIFT_DEP_MINS) & MASK_12_BITS;
+
+            // Soit les deux ont une heure de départ, soit aucun des deux
+            Preconditions.checkArgument((tDepField == 0) == (depField == 0));
+
+            // Le complément de l'heure de départ est plus petit pour un départ plus tardif
+            if (tDepField <= depField
+                    && ((t >>> SHIFT_ARR_MINS) & MASK_12_BITS) <= arrField
+                    && ((t >>> SHIFT_CHANGES) & MASK_7_BITS) <= changesField)
+                return true;
+        }
+        return false;
+    }
+}
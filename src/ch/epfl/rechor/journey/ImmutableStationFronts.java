@@ -0,0 +1,31 @@
+package ch.epfl.rechor.journey;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Liste immuable des frontières de Pareto des gares d'un profil, dans une représentation propre au paquetage
+ * (compacte, compressée ou projetée en mémoire). Le constructeur de Profile ne copie pas une telle liste,
+ * ce qui ferait perdre le bénéfice de sa représentation.
+ * Les méthodes de modification héritées d'AbstractList lèvent toutes UnsupportedOperationException
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+abstract class ImmutableStationFronts extends AbstractList<ParetoFront> implements RandomAccess {
+
+    /**
+     * Fonction qui retourne une estimation du nombre d'octets occupés par la liste dans le tas
+     * (sans compter d'éventuelles données projetées en mémoire, qui n'y sont pas)
+     * @return le nombre d'octets (approximatif) occupés par la liste dans le tas
+     */
+    abstract long heapBytes();
+
+    /**
+     * Fonction qui retourne le nombre d'octets des données projetées en mémoire que la liste retient
+     * (0 par défaut, la liste étant entièrement dans le tas)
+     * @return le nombre d'octets projetés en mémoire retenus par la liste
+     */
+    long mappedBytes() {
+        return 0;
+    }
+}
@@ -1,6 +1,7 @@
 package ch.epfl.rechor.journey;
 
 import ch.epfl.rechor.Bits32_24_8;
+import ch.epfl.rechor.timetable.StopStations;
 import ch.epfl.rechor.timetable.TimeTable;
 
 import java.time.LocalDateTime;
@@ -35,8 +36,11 @@ public final class JourneyExtractor {
         // Frontière de Pareto de la station de départ
         ParetoFront pf = profile.forStation(depStationId);
 
+        // Table des gares des arrêts, obtenue une seule fois pour tous les voyages
+        StopStations stopStations = profile.timeTable().stopStations();
+
         // Pour chacun des critères de la frontière, on crée un voyage qu'on ajoute dans la liste
-        pf.forEach(criteria -> journeys.add(makeJourney(profile, criteria, depStationId)));
+        pf.forEach(criteria -> journeys.add(makeJourney(profile, stopStations, criteria, depStationId)));
 
         // On trie nos voyages
         journeys.sort(Comparator.comparing(Journey::depTime).thenComparing(Journey::arrTime));
@@ -48,7 +52,7 @@ public final class JourneyExtractor {
      * Construit un voyage à partir du premier critère et enchaîne les legs (transport et pied)
      * en traitant séparément le premier leg puis les changements restants.
      */
-    private static Journey makeJourney(Profile profile, long firstCriteria, int depStationId) {
+    private static Journey makeJourney(Profile profile, StopStations stopStations, long firstCriteria, int depStationId) {
         // Liste des étapes qui vont permettre de créer un voyage
         List<Journey.Leg> legs = new ArrayList<>();
 
@@ -69,11 +73,11 @@ public final class JourneyExtractor {
 
         // On compare le premier stop fourni avec le stop de la première connection, donc le premier stop réellement
         // utilisé, et s'ils ne sont pas les mêmes, c'est qu'il y a un trajet à pied à faire, comme première étape
-        Stop firstStopProvided = getStopInstance(profile, depStationId);
-        Stop firstStopUsed = getStopInstance(profile, firstStopUsedId);
+        Stop firstStopProvided = getStopInstance(profile, stopStations, depStationId);
+        Stop firstStopUsed = getStopInstance(profile, stopStations, firstStopUsedId);
         if (!firstStopProvided.name().equals(firstStopUsed.name())) {
             int transferDuration = profile.timeTable().transfers().minutesBetween(depStationId,
-                    profile.timeTable().stationId(firstStopUsedId));
+                    stopStations.stationOf(firstStopUsedId));
 
             // PREMIER LEG = FOOTLEG
             LocalDateTime firstFootLegDepTime = profile.date().atStartOfDay().plusMinutes(depMinsOfFirstCriteria);
@@ -95,11 +99,11 @@ public final class JourneyExtractor {
         int currentConnectionId = firstConnectionIdOfThisJourney;
 
         // Boucle qui crée les arrêts intermédiaires
-        currentConnectionId = createIntermediateStops(profile, intermediateStops, nbOfIntermediateStopsOfFirstTransportLeg, currentConnectionId);
+        currentConnectionId = createIntermediateStops(profile, stopStations, intermediateStops, nbOfIntermediateStopsOfFirstTransportLeg, currentConnectionId);
 
         // Création du segment de transport
         Journey.Leg.Transport firstTransportLeg = createTransportLeg(
-                profile, timeTable, firstConnectionIdOfThisJourney, currentConnectionId, firstStopUsed, intermediateStops);
+                profile, stopStations, timeTable, firstConnectionIdOfThisJourney, currentConnectionId, firstStopUsed, intermediateStops);
 
         legs.add(firstTransportLeg);
         int remainingChangesOfJourney = changesOfFirstCriteria - 1;
@@ -115,7 +119,7 @@ public final class JourneyExtractor {
         // Tant qu'il reste des changements dans le voyage
         while (remainingChangesOfJourney >= 0) {
             // On choppe le critère de là où on en est
-            ParetoFront currentParetoFront = profile.forStation(profile.timeTable().stationId(currentStopId));
+            ParetoFront currentParetoFront = profile.forStation(stopStations.stationOf(currentStopId));
 
             // Extraction des données
             long currentCriteria = currentParetoFront.get(finalArrMinsOfFirstCriteria, remainingChangesOfJourney);
@@ -129,13 +133,13 @@ public final class JourneyExtractor {
             // L'étape d'avant était en transport, on doit donc maintenant en créer une à pied
 
             // Stops
-            Stop currentStop = getStopInstance(profile, currentStopId);
-            Stop nextDepStop = getStopInstance(profile, nextDepStopId);
+            Stop currentStop = getStopInstance(profile, stopStations, currentStopId);
+            Stop nextDepStop = getStopInstance(profile, stopStations, nextDepStopId);
 
             // Durée du changement
             int transferDuration = profile.timeTable().transfers()
-                    .minutesBetween(profile.timeTable().stationId(currentStopId),
-                            profile.timeTable().stationId(nextDepStopId));
+                    .minutesBetween(stopStations.stationOf(currentStopId),
+                            stopStations.stationOf(nextDepStopId));
 
             // Heures
             LocalDateTime footDepTime = startingTimeOfCurrentLeg;
@@ -149,12 +153,12 @@ public final class JourneyExtractor {
 
             // Gestion des arrêts intermédiaires
             List<Journey.Leg.IntermediateStop> nextIntermediateStops = new ArrayList<>(nbOfIntermediateStopsOfCurrentLeg);
-            currentConnectionId = createIntermediateStops(profile, nextIntermediateStops, nbOfIntermediateStopsOfCurrentLeg, firstConnectionOfCurrentLeg);
+            currentConnectionId = createIntermediateStops(profile, stopStations, nextIntermediateStops, nbOfIntermediateStopsOfCurrentLeg, firstConnectionOfCurrentLeg);
 
             // Création du segment de transport
-            Stop depStopOfCurrentLeg = getStopInstance(profile, nextDepStopId);
+            Stop depStopOfCurrentLeg = getStopInstance(profile, stopStations, nextDepStopId);
             Journey.Leg.Transport transportLeg = createTransportLeg(
-                    profile, timeTable, firstConnectionOfCurrentLeg, currentConnectionId, depStopOfCurrentLeg, nextIntermediateStops);
+                    profile, stopStations, timeTable, firstConnectionOfCurrentLeg, currentConnectionId, depStopOfCurrentLeg, nextIntermediateStops);
 
             legs.add(transportLeg);
 
@@ -165,10 +169,10 @@ public final class JourneyExtractor {
         }
 
         // Ajout du segment de marche final si nécessaire
-        Stop finalStop = getStopInstance(profile, currentStopId);
-        Stop destinationStop = getStopInstance(profile, profile.arrStationId());
+        Stop finalStop = getStopInstance(profile, stopStations, currentStopId);
+        Stop destinationStop = getStopInstance(profile, stopStations, profile.arrStationId());
         if (!finalStop.name().equals(destinationStop.name())) {
-            int transferDuration = profile.timeTable().transfers().minutesBetween(profile.timeTable().stationId(currentStopId), profile.arrStationId());
+            int transferDuration = profile.timeTable().transfers().minutesBetween(stopStations.stationOf(currentStopId), profile.arrStationId());
             LocalDateTime finalFootLegDepTime = startingTimeOfCurrentLeg;
             LocalDateTime finalFootLegArrTime = finalFootLegDepTime.plusMinutes(transferDuration);
             legs.add(new Journey.Leg.Foot(finalStop, finalFootLegDepTime, destinationStop, finalFootLegArrTime));
@@ -181,6 +185,7 @@ public final class JourneyExtractor {
     /**
      * Création d'une étape de transport, pour éviter la duplication de code
      * @param profile profil
+     * @param stopStations table des gares des arrêts
      * @param timeTable table d'horaire
      * @param initialConnId id de la connection de départ.
      * @param finalConnId id de la connection finale
@@ -189,14 +194,14 @@ public final class JourneyExtractor {
      * @return la leg
      */
     private static Journey.Leg.Transport createTransportLeg(
-            Profile profile, TimeTable timeTable, int initialConnId, int finalConnId, Stop depStop, List<Journey.Leg.IntermediateStop> intermediateStops) {
+            Profile profile, StopStations stopStations, TimeTable timeTable, int initialConnId, int finalConnId, Stop depStop, List<Journey.Leg.IntermediateStop> intermediateStops) {
 
         // Date de départ
         LocalDateTime depTime = getLocalDateTime(profile, initialConnId);
 
         // Arrêt final et date d'arrivée
         int arrStopId = profile.connections().arrStopId(finalConnId);
-        Stop arrStop = getStopInstance(profile, arrStopId);
+        Stop arrStop = getStopInstance(profile, stopStations, arrStopId);
 
         // Date d'arrivée
         LocalDateTime arrTime = profile.date().atStartOfDay().plusMinutes(profile.connections().arrMins(finalConnId));
@@ -221,17 +226,18 @@ public final class JourneyExtractor {
      * Méthode qui remplis une liste d'arrêts intermédiaire et qui actualise l'id de la connexion en la retournant
      * Modularisation pour éviter la duplication
      * @param profile profil
+     * @param stopStations table des gares des arrêts
      * @param intermediateStops liste d'arrêts intermédiaires à remplir
      * @param intermediateStopsRemaining nombre d'arrêt qu'il faut créer
      * @param currentConnectionId id de la connexion actuelle
      * @return l'id de la connexion incrémentée, après avoir ajouter les stops à la liste
      */
-    private static int createIntermediateStops(Profile profile, List<Journey.Leg.IntermediateStop> intermediateStops, int intermediateStopsRemaining, int currentConnectionId) {
+    private static int createIntermediateStops(Profile profile, StopStations stopStations, List<Journey.Leg.IntermediateStop> intermediateStops, int intermediateStopsRemaining, int currentConnectionId) {
         while (intermediateStopsRemaining > 0) {
             // On prend le prochain stop
             int nextConnectionId = profile.connections().nextConnectionId(currentConnectionId);
             int stopId = profile.connections().depStopId(nextConnectionId);
-            Stop intermediateStop = getStopInstance(profile, stopId);
+            Stop intermediateStop = getStopInstance(profile, stopStations, stopId);
 
             // Ainsi que la date de départ et d'arrivée à celui-ci
             LocalDateTime arrTime = profile.date().atStartOfDay().plusMinutes(profile.connections().arrMins(currentConnectionId));
@@ -252,9 +258,9 @@ public final class JourneyExtractor {
     /**
      * Crée une instance de Stop en distinguant l'ID de station de celui du quai.
      */
-    private static Stop getStopInstance(Profile profile, int stopId) {
+    private static Stop getStopInstance(Profile profile, StopStations stopStations, int stopId) {
         TimeTable timeTable = profile.timeTable();
-        int stationId = timeTable.isStationId(stopId) ? stopId : timeTable.stationId(stopId);
+        int stationId = stopStations.stationOf(stopId);
         String stopName = timeTable.stations().name(stationId);
         double longitude = timeTable.stations().longitude(stationId);
         double latitude = timeTable.stations().latitude(stationId);
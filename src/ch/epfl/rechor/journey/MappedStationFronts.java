@@ -0,0 +1,68 @@
+package ch.epfl.rechor.journey;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Liste immuable des frontières de Pareto des gares d'un profil, lues directement dans un fichier de profil
+ * projeté en mémoire (voir ProfileStore). Le fichier n'est pas copié dans le tas : seule la frontière demandée
+ * est lue, à chaque appel de get, et les pages du fichier sont partagées par tous les processus qui le projettent.
+ * Les lectures se font à des positions absolues, la liste peut donc être utilisée par plusieurs fils à la fois.
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+final class MappedStationFronts extends ImmutableStationFronts {
+
+    // Contenu du fichier
+    private final ByteBuffer buffer;
+
+    // Nombre de gares, et positions (en octets) de la table des index des frontières et des tuples
+    private final int stationsCount;
+    private final int offsetsPosition;
+    private final int tuplesPosition;
+
+    /**
+     * Constructeur qui lit les frontières dans le tampon donné, sans le copier
+     * @param buffer contenu du fichier
+     * @param stationsCount nombre de gares
+     * @param offsetsPosition position de la table des index du premier tuple de chaque gare
+     *                        (suivie du nombre total de tuples), formée de stationsCount + 1 entiers
+     * @param tuplesPosition position du premier tuple
+     */
+    MappedStationFronts(ByteBuffer buffer, int stationsCount, int offsetsPosition, int tuplesPosition) {
+        this.buffer = buffer;
+        this.stationsCount = stationsCount;
+        this.offsetsPosition = offsetsPosition;
+        this.tuplesPosition = tuplesPosition;
+    }
+
+    @Override
+    public ParetoFront get(int stationId) {
+        Objects.checkIndex(stationId, stationsCount);
+        int from = buffer.getInt(offsetsPosition + Integer.BYTES * stationId);
+        int to = buffer.getInt(offsetsPosition + Integer.BYTES * (stationId + 1));
+        if (from == to) return ParetoFront.EMPTY;
+
+        long[] tuples = new long[to - from];
+        for (int i = 0; i < tuples.length; i++)
+            tuples[i] = buffer.getLong(tuplesPosition + Long.BYTES * (from + i));
+        return ParetoFront.view(tuples, 0, tuples.length);
+    }
+
+    @Override
+    public int size() {
+        return stationsCount;
+    }
+
+    @Override
+    long heapBytes() {
+        // Les frontières sont dans le fichier projeté, hors du tas
+        return 0;
+    }
+
+    @Override
+    long mappedBytes() {
+        // La projection de tout le fichier reste ouverte tant que la liste est atteignable
+        return buffer.capacity();
+    }
+}
@@ -16,14 +16,14 @@ public class PackedCriteria {
     private static final int MAX_ARR_MINS = 2880;
     private static final int OFFSET = 240;
 
-    // Constantes pour les shifts
-    private static final int SHIFT_ARR_MINS = 39;
-    private static final int SHIFT_CHANGES = 32;
-    private static final int SHIFT_DEP_MINS = 51;
-
-    // Constantes pour les masques
-    private static final long MASK_7_BITS = 0x7F;
-    private static final long MASK_12_BITS = 0xFFFL;
+    // Constantes pour les shifts (visibles dans le paquetage, pour les noyaux de Dominance)
+    static final int SHIFT_ARR_MINS = 39;
+    static final int SHIFT_CHANGES = 32;
+    static final int SHIFT_DEP_MINS = 51;
+
+    // Constantes pour les masques (visibles dans le paquetage, pour les noyaux de Dominance)
+    static final long MASK_7_BITS = 0x7F;
+    static final long MASK_12_BITS = 0xFFFL;
     private static final long MASK_32_BITS = 0xFFFFFFFFL;
     private static final long MASK_UPPER_32_BITS = 0xFFFFFFFF00000000L;
 
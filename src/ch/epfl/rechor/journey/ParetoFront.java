@@ -1,6 +1,10 @@
 package ch.epfl.rechor.journey;
 
+import ch.epfl.rechor.Preconditions;
+
+import java.util.Arrays;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.function.LongConsumer;
 
 /**
@@ -10,8 +14,11 @@ import java.util.function.LongConsumer;
  */
 public final class ParetoFront {
 
-    // tuples de la frontière stockée sous forme empaquetée
+    // tuples de la frontière stockée sous forme empaquetée, entre les index from (inclus) et to (exclu)
+    // du tableau, qui peut être partagé par plusieurs frontières (p. ex. celles d'un profil)
     private final long[] packedCriterias;
+    private final int from;
+    private final int to;
 
     /**
      * Attribut qui contient une frontière de pareto vide
@@ -23,9 +30,35 @@ public final class ParetoFront {
      * @param packedCriterias (critères empaquetés)
      */
     private ParetoFront(long[] packedCriterias) {
+        this(packedCriterias, 0, packedCriterias.length);
+    }
+
+    /**
+     * Constructeur privé, qui stock une partie des critères empaquetés sans les copier
+     * @param packedCriterias (critères empaquetés)
+     * @param from index du premier critère de la frontière (inclus)
+     * @param to index du dernier critère de la frontière (exclu)
+     */
+    private ParetoFront(long[] packedCriterias, int from, int to) {
 
         // il ne faut pas copier les critères
         this.packedCriterias = packedCriterias;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Fonction qui retourne une frontière dont les tuples sont ceux du tableau donné, entre les index donnés.
+     * Le tableau n'est pas copié, et ne doit donc plus être modifié
+     * @param packedCriterias tableau de critères empaquetés, formant une frontière entre les index donnés
+     * @param from index du premier critère de la frontière (inclus)
+     * @param to index du dernier critère de la frontière (exclu)
+     * @return une vue sur les tuples donnés, ou EMPTY s'il n'y en a aucun
+     * @throws IndexOutOfBoundsException si les index sont invalides
+     */
+    static ParetoFront view(long[] packedCriterias, int from, int to) {
+        Objects.checkFromToIndex(from, to, packedCriterias.length);
+        return from == to ? EMPTY : new ParetoFront(packedCriterias, from, to);
     }
 
     /**
@@ -34,7 +67,7 @@ public final class ParetoFront {
      */
     public int size() {
 
-        return packedCriterias.length;
+        return to - from;
     }
 
     /**
@@ -47,7 +80,8 @@ public final class ParetoFront {
     public long get(int arrMins, int changes) {
 
         // On itère sur tous les critères de notre liste
-        for (long pc : packedCriterias) {
+        for (int i = from; i < to; i++) {
+            long pc = packedCriterias[i];
             // si l'un est identique aux params, on le retourne
             if (PackedCriteria.arrMins(pc) == arrMins && PackedCriteria.changes(pc) == changes) {
                 return pc;
@@ -65,7 +99,8 @@ public final class ParetoFront {
     public void forEach(LongConsumer action) {
 
         // On itère sur tous les critères de notre liste
-        for (long packed_criteria : packedCriterias) {
+        for (int i = from; i < to; i++) {
+            long packed_criteria = packedCriterias[i];
 
             // on appelle la méthode accept de LongConsumer
             action.accept(packed_criteria);
@@ -84,7 +119,8 @@ public final class ParetoFront {
 
         StringBuilder s = new StringBuilder();
 
-        for (long pc : packedCriterias){
+        for (int i = from; i < to; i++) {
+            long pc = packedCriterias[i];
 
             // Montrer l'heure de départ si elle est présente
             if (PackedCriteria.hasDepMins(pc)) {
@@ -112,14 +148,24 @@ public final class ParetoFront {
      */
     public final static class Builder {
 
-        // Tableau de type long qui contient les tuples
-        // en cours de construction
+        // Tableau de type long qui contient les tuples en cours de construction, à partir de l'index offset.
+        // Il appartient au bâtisseur, ou est le tableau partagé de l'arène qui le contient
         private long[] arrayInConstruction;
+        private int offset;
         private int effectiveSize;
 
+        // Arène qui contient les tuples, ou null si le bâtisseur possède son propre tableau
+        private final Slab slab;
+
         // Capacité initiale du tableau de pareto
         private static final int INITIAL_CAPACITY = 2;
 
+        // Table de travail de addAll et fullyDominates, qui contient l'heure d'arrivée minimale des tuples
+        // par nombre maximal de changements (codé sur 7 bits). Elle est propre à chaque fil d'exécution,
+        // afin que ces méthodes n'allouent rien et que des bâtisseurs distincts puissent être utilisés en parallèle
+        private static final ThreadLocal<int[]> MIN_ARR_MINS_BY_CHANGES =
+                ThreadLocal.withInitial(() -> new int[128]);
+
         private int capacity;
 
         /**
@@ -133,18 +179,44 @@ public final class ParetoFront {
 
             // on crée juste un tableau vide
             this.arrayInConstruction = new long[capacity];
+            this.offset = 0;
+            this.slab = null;
 
             // la taille effective est nulle par défaut
             this.effectiveSize = 0;
         }
 
+        /**
+         * Constructeur privé qui retourne un bâtisseur vide dont les tuples sont stockés dans l'arène donnée
+         * @param slab arène qui contient les tuples
+         */
+        private Builder(Slab slab) {
+            this.slab = slab;
+            reinitialize();
+        }
+
+        /**
+         * Fonction qui vide un bâtisseur stocké dans une arène et lui attribue une nouvelle tranche
+         * de capacité initiale, ce qui permet à l'arène de le réutiliser après avoir été vidée
+         */
+        private void reinitialize() {
+            this.capacity = INITIAL_CAPACITY;
+            this.offset = slab.allocate(capacity);
+            this.arrayInConstruction = slab.array;
+            this.effectiveSize = 0;
+        }
+
         /**
          * Constructeur de copie qui retourne un nouveau bâtisseur
          * avec les mêmes attributs que celui reçu en argument
          * @param that bâtisseur à copier
          */
         public Builder(Builder that) {
-            this.arrayInConstruction = that.arrayInConstruction.clone();
+            // La copie possède toujours son propre tableau, même si l'original est dans une arène
+            this.arrayInConstruction = Arrays.copyOfRange(
+                    that.arrayInConstruction, that.offset, that.offset + that.capacity);
+            this.offset = 0;
+            this.slab = null;
             this.effectiveSize = that.effectiveSize;
             this.capacity = that.capacity;
         }
@@ -167,12 +239,8 @@ public final class ParetoFront {
          */
         public Builder clear() {
 
-            // on remet la capacité initiale
-            capacity = INITIAL_CAPACITY;
-
-            // on réinitialise les instances de classe
-            // donc on refait comme dans le constructeur
-            this.arrayInConstruction = new long[capacity];
+            // on garde le tableau déjà alloué, afin qu'un bâtisseur puisse être
+            // réutilisé sans nouvelle allocation, il suffit de remettre la taille effective à 0
             this.effectiveSize = 0;
 
             // on renvoi l'instance nettoyée
@@ -188,31 +256,15 @@ public final class ParetoFront {
         public Builder add(long packedTuple) {
 
             // ------------- 1) On cherche la position d'insertion ----------------
-            int insertionPosition = -1;
-
-            for (int i = 0; i < effectiveSize; i++) {
-
-                // On les compare sans les payload
-                long packedTupleWithoutPayload = PackedCriteria.withPayload(packedTuple, 0);
-                long elementToCompareWithoutPayload = PackedCriteria.withPayload(arrayInConstruction[i], 0);
-
-                // On check just que le tuple ne se fasse pas dominer, sinon ça ne sert à rien de l'ajouter
-                if (PackedCriteria.dominatesOrIsEqual(elementToCompareWithoutPayload, packedTupleWithoutPayload))
-                    return this;
-
-                // On s'arrête d'itérer dès qu'un tuple est plus grand (dans l'ordre lexicographique)
-                if (packedTupleWithoutPayload < elementToCompareWithoutPayload) {
-                    insertionPosition = i;
-                    break;
-                }
-            }
-
-            // Si aucune valeur n'a été assignée cela veut dire qu'on est à la fin
-            // et donc on met à jour effectiveSize
-            if (insertionPosition == -1) {
-                insertionPosition = effectiveSize;
-            }
+            // Les tuples sont triés dans l'ordre lexicographique de leurs critères (sans la charge utile),
+            // on cherche donc par dichotomie la position du premier tuple strictement plus grand
+            int insertionPosition = insertionPosition(packedTuple);
 
+            // Seuls les tuples qui précèdent cette position peuvent dominer le nouveau (ceux qui la suivent
+            // partent plus tôt, arrivent plus tard ou ont plus de changements). Si l'un d'eux le domine,
+            // ça ne sert à rien de l'ajouter
+            if (Dominance.anyDominatesOrIsEqual(arrayInConstruction, offset, offset + insertionPosition, packedTuple))
+                return this;
 
             // ------------- 2) Suppression de tous les tuples dominés par le nouveau ----------------
             // Tous ceux de gauches seront gardés, c'est à droite que l'on va devoir trier
@@ -223,14 +275,14 @@ public final class ParetoFront {
             for (int src = insertionPosition; src < effectiveSize; src += 1) {
 
                 // Si le critère regardé se fait dominé par celui fraîchement ajouté, on ne le garde pas
-                if (PackedCriteria.dominatesOrIsEqual(packedTuple, arrayInConstruction[src])) {
+                if (PackedCriteria.dominatesOrIsEqual(packedTuple, arrayInConstruction[offset + src])) {
                     continue;
                 }
 
                 // Si le critère regardé ne se fait pas dominé par celui fraîchement ajouté, on le place au
                 // bon endroit, en mettant à jour la taille des valeurs conservées (utile plus tard)
                 if (nbOfConservatedValue != src) {
-                    arrayInConstruction[nbOfConservatedValue] = arrayInConstruction[src];
+                    arrayInConstruction[offset + nbOfConservatedValue] = arrayInConstruction[offset + src];
                 }
 
                 nbOfConservatedValue += 1;
@@ -241,17 +293,13 @@ public final class ParetoFront {
 
 
             // ------------ 3) On augmente la taille si nécessaire ---------------
-            if (effectiveSize == arrayInConstruction.length){
-                this.capacity *= 2;
-                long[] newArrayInConstruction = new long[capacity];
-                System.arraycopy(arrayInConstruction, 0,newArrayInConstruction, 0, effectiveSize);
-                arrayInConstruction = newArrayInConstruction;
-            }
+            ensureCapacity(effectiveSize + 1);
 
 
             // ------------ 4) On crée de la place pour ajouter notre tuple
-            System.arraycopy(arrayInConstruction, insertionPosition, arrayInConstruction, insertionPosition + 1, effectiveSize - insertionPosition);
-            arrayInConstruction[insertionPosition] = packedTuple;
+            System.arraycopy(arrayInConstruction, offset + insertionPosition,
+                    arrayInConstruction, offset + insertionPosition + 1, effectiveSize - insertionPosition);
+            arrayInConstruction[offset + insertionPosition] = packedTuple;
             effectiveSize++;
 
             return this;
@@ -269,6 +317,47 @@ public final class ParetoFront {
             return add(packedTuple);
         }
 
+        /**
+         * Fonction qui retourne, par dichotomie, la position du premier tuple de la frontière
+         * dont les critères (sans la charge utile) sont strictement plus grands que ceux du tuple donné
+         * @param packedTuple tuple de critères empaqueté
+         * @return la position à laquelle le tuple donné doit être inséré
+         */
+        private int insertionPosition(long packedTuple) {
+
+            // Les critères occupent les 32 bits de poids fort, et le bit de signe est toujours nul
+            long criteria = packedTuple >>> 32;
+            int low = 0, high = effectiveSize;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if ((arrayInConstruction[offset + middle] >>> 32) <= criteria) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+
+        /**
+         * Fonction qui agrandit si nécessaire le tableau en cours de construction,
+         * afin qu'il puisse contenir au moins le nombre de tuples donné.
+         * Attention, le tableau (et l'index offset) peuvent changer, il faut donc les relire après l'appel
+         * @param minCapacity nombre de tuples minimum
+         */
+        private void ensureCapacity(int minCapacity) {
+            if (minCapacity > capacity) {
+                int newCapacity = capacity;
+                while (newCapacity < minCapacity) newCapacity *= 2;
+                if (slab == null) {
+                    long[] newArrayInConstruction = new long[newCapacity];
+                    System.arraycopy(arrayInConstruction, 0, newArrayInConstruction, 0, effectiveSize);
+                    arrayInConstruction = newArrayInConstruction;
+                } else {
+                    offset = slab.reallocate(offset, capacity, newCapacity, effectiveSize);
+                    arrayInConstruction = slab.array;
+                }
+                capacity = newCapacity;
+            }
+        }
+
         /**
          * Ajoute à la frontière tous les tuples
          * présents dans la frontière en cours de construction par le bâtisseur donné
@@ -277,12 +366,85 @@ public final class ParetoFront {
          */
         public Builder addAll(Builder that) {
 
-            // il faut d'abord build avant d'appliquer le forEach sinon
-            // on va itérer sur des valeurs nulles du tableau qu'on ne veut pas
-            that.forEach(this::add);
+            // Ajouter ses propres tuples ne change rien
+            if (that == this || that.effectiveSize == 0) return this;
+
+            int thisSize = effectiveSize;
+            int thatSize = that.effectiveSize;
+
+            // Les deux frontières sont triées : on les fusionne en un seul parcours, directement dans
+            // notre tableau. On décale d'abord nos tuples à sa fin, puis on écrit le résultat depuis
+            // le début, sans jamais écraser un tuple pas encore lu.
+            // Le tableau de that n'est lu qu'après l'agrandissement, qui peut déplacer l'arène
+            ensureCapacity(thisSize + thatSize);
+            long[] thisArray = arrayInConstruction;
+            int thisOffset = offset;
+            long[] thatArray = that.arrayInConstruction;
+            int thatOffset = that.offset;
+
+            // Une frontière vide prend simplement une copie des tuples de that, qui forment déjà une frontière
+            if (thisSize == 0) {
+                System.arraycopy(thatArray, thatOffset, thisArray, thisOffset, thatSize);
+                effectiveSize = thatSize;
+                return this;
+            }
+            System.arraycopy(thisArray, thisOffset, thisArray, thisOffset + thatSize, thisSize);
+
+            // Un tuple peut seulement être dominé par un tuple qui le précède dans l'ordre lexicographique.
+            // Il suffit donc de savoir si l'un des tuples déjà conservés arrive au plus tard à la même heure
+            // avec au plus autant de changements, ce que donne la table des heures d'arrivée minimales
+            // des tuples conservés, par nombre maximal de changements
+            int maxChanges = Math.max(
+                    maxChanges(thisArray, thisOffset + thatSize, thisOffset + thatSize + thisSize),
+                    maxChanges(thatArray, thatOffset, thatOffset + thatSize));
+            int[] minArrMins = MIN_ARR_MINS_BY_CHANGES.get();
+            Arrays.fill(minArrMins, 0, maxChanges + 1, Integer.MAX_VALUE);
+
+            int i = thatSize, thisEnd = thatSize + thisSize;
+            int j = 0;
+            int nbOfConservatedValue = 0;
+            while (i < thisEnd || j < thatSize) {
+
+                // À critères égaux, nos tuples passent en premier, comme avec add
+                long candidate;
+                if (j == thatSize || (i < thisEnd
+                        && (thisArray[thisOffset + i] >>> 32) <= (thatArray[thatOffset + j] >>> 32)))
+                    candidate = thisArray[thisOffset + i++];
+                else
+                    candidate = thatArray[thatOffset + j++];
+
+                if (nbOfConservatedValue > 0) {
+                    // Les deux frontières doivent avoir (ou non) des heures de départ, comme pour add
+                    Preconditions.checkArgument(PackedCriteria.hasDepMins(candidate)
+                            == PackedCriteria.hasDepMins(thisArray[thisOffset]));
+                }
+
+                int arrMins = PackedCriteria.arrMins(candidate);
+                int changes = PackedCriteria.changes(candidate);
+                if (minArrMins[changes] <= arrMins) continue;
+
+                // Le tuple est conservé, il améliore la table pour tous les nombres de changements supérieurs
+                thisArray[thisOffset + nbOfConservatedValue++] = candidate;
+                for (int c = changes; c <= maxChanges && minArrMins[c] > arrMins; c++) minArrMins[c] = arrMins;
+            }
+
+            effectiveSize = nbOfConservatedValue;
             return this;
         }
 
+        /**
+         * Fonction qui retourne le plus grand nombre de changements des tuples donnés
+         * @param packedTuples tableau de tuples empaquetés
+         * @param from index du premier tuple (inclus)
+         * @param to index du dernier tuple (exclu)
+         * @return le plus grand nombre de changements, ou 0 s'il n'y a aucun tuple
+         */
+        private static int maxChanges(long[] packedTuples, int from, int to) {
+            int maxChanges = 0;
+            for (int i = from; i < to; i++) maxChanges = Math.max(maxChanges, PackedCriteria.changes(packedTuples[i]));
+            return maxChanges;
+        }
+
         /**
          * Retourne vrai si et seulement si la totalité des tuples de la frontière donnée,
          * une fois que leur heure de départ a été fixée sur celle donnée,
@@ -293,29 +455,42 @@ public final class ParetoFront {
          */
         public boolean fullyDominates(Builder that, int depMins){
 
-            // Pour chacun des tuples de that
-            for (int i = 0; i < that.effectiveSize; i++) {
-
-                boolean hasBeenDominated = false;
+            // Une frontière vide est toujours dominée
+            if (that.effectiveSize == 0) return true;
 
-                // On prend sa version modifiée selon depMins donné
-                long modifiedValue = PackedCriteria.withDepMins(that.arrayInConstruction[i], depMins);
-
-                // On la compare avec tous nos tuples de this
-                for (int j = 0; j < this.effectiveSize; j++){
-
-                    // Si this domine that
-                    if (PackedCriteria.dominatesOrIsEqual(this.arrayInConstruction[j], modifiedValue)) {
-
-                        // On modifie la variable
-                        hasBeenDominated = true;
-                        break;
-                    }
-                }
-
-                // Si un that n'a été dominé par aucun this
-                if (!hasBeenDominated) {return false;}
+            // On vérifie que l'heure de départ donnée est valide, comme le fait withDepMins
+            PackedCriteria.withDepMins(that.arrayInConstruction[that.offset], depMins);
 
+            // Seuls nos tuples qui partent au plus tôt à l'heure donnée peuvent dominer ceux de that.
+            // Nos tuples étant triés par heure de départ décroissante, ce sont les premiers,
+            // et on trouve leur nombre par dichotomie
+            int low = 0, high = effectiveSize;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (PackedCriteria.depMins(arrayInConstruction[offset + middle]) >= depMins) low = middle + 1;
+                else high = middle;
+            }
+            int candidatesCount = low;
+            if (candidatesCount == 0) return false;
+
+            // Table des heures d'arrivée minimales de ces tuples, par nombre maximal de changements,
+            // calculée en un seul parcours
+            int maxChanges = maxChanges(that.arrayInConstruction, that.offset, that.offset + that.effectiveSize);
+            int[] minArrMins = MIN_ARR_MINS_BY_CHANGES.get();
+            Arrays.fill(minArrMins, 0, maxChanges + 1, Integer.MAX_VALUE);
+            for (int i = offset; i < offset + candidatesCount; i++) {
+                int changes = PackedCriteria.changes(arrayInConstruction[i]);
+                if (changes <= maxChanges)
+                    minArrMins[changes] = Math.min(minArrMins[changes], PackedCriteria.arrMins(arrayInConstruction[i]));
+            }
+            for (int c = 1; c <= maxChanges; c++) minArrMins[c] = Math.min(minArrMins[c], minArrMins[c - 1]);
+
+            // Un tuple de that est dominé si l'un de nos tuples arrive au plus tard à la même heure
+            // avec au plus autant de changements
+            for (int i = that.offset; i < that.offset + that.effectiveSize; i++) {
+                long packedTuple = that.arrayInConstruction[i];
+                if (minArrMins[PackedCriteria.changes(packedTuple)] > PackedCriteria.arrMins(packedTuple))
+                    return false;
             }
 
             // Si aucun that ne s'est pas fait dominer, c'est que tous ceux
@@ -332,11 +507,80 @@ public final class ParetoFront {
 
             for (int i = 0; i < this.effectiveSize; ++i) {
 
-                action.accept(arrayInConstruction[i]);
+                action.accept(arrayInConstruction[offset + i]);
             }
 
         }
 
+        /**
+         * Retourne vrai si et seulement si au moins un tuple de la frontière en cours de construction
+         * domine ou est égal au tuple donné
+         * @param packedTuple tuple de critères empaqueté
+         * @return vrai si le tuple donné est dominé par la frontière
+         */
+        boolean dominatesOrIsEqual(long packedTuple) {
+            return Dominance.anyDominatesOrIsEqual(arrayInConstruction, offset, offset + effectiveSize, packedTuple);
+        }
+
+        /**
+         * Supprime de la frontière en cours de construction tous les tuples dont l'heure de départ
+         * est strictement antérieure à celle donnée, en conservant l'ordre des autres
+         * @param depMins heure de départ minimale, en minutes après minuit
+         * @return le builder mis à jour
+         * @throws IllegalArgumentException si un tuple de la frontière n'a pas d'heure de départ
+         */
+        Builder removeDepartingBefore(int depMins) {
+            int nbOfConservatedValue = 0;
+            for (int src = 0; src < effectiveSize; src += 1) {
+                if (PackedCriteria.depMins(arrayInConstruction[offset + src]) >= depMins) {
+                    arrayInConstruction[offset + nbOfConservatedValue] = arrayInConstruction[offset + src];
+                    nbOfConservatedValue += 1;
+                }
+            }
+            effectiveSize = nbOfConservatedValue;
+            return this;
+        }
+
+        /**
+         * Fonction qui copie les tuples de la frontière en cours de construction dans le tableau donné
+         * @param destination tableau de destination
+         * @param destinationPosition index auquel le premier tuple est copié
+         * @return l'index qui suit le dernier tuple copié
+         * @throws IndexOutOfBoundsException si le tableau de destination est trop petit
+         */
+        int copyTo(long[] destination, int destinationPosition) {
+            System.arraycopy(arrayInConstruction, offset, destination, destinationPosition, effectiveSize);
+            return destinationPosition + effectiveSize;
+        }
+
+        /**
+         * Fonction qui retourne vrai si et seulement si les tuples du bâtisseur sont stockés dans l'arène donnée
+         * @param slab arène
+         * @return vrai si le bâtisseur a été fourni par cette arène
+         */
+        boolean isInSlab(Slab slab) {
+            return this.slab == slab;
+        }
+
+        /**
+         * Fonction qui retourne le nombre de tuples de la frontière en cours de construction
+         * @return la taille effective de la frontière
+         */
+        int size() {
+            return effectiveSize;
+        }
+
+        /**
+         * Fonction qui retourne le tuple d'index donné de la frontière en cours de construction,
+         * ce qui permet de la parcourir sans passer par un LongConsumer
+         * @param index index du tuple, entre 0 (inclus) et size() (exclu)
+         * @return le tuple empaqueté d'index donné
+         * @throws IndexOutOfBoundsException si l'index est invalide
+         */
+        long get(int index) {
+            return arrayInConstruction[offset + Objects.checkIndex(index, effectiveSize)];
+        }
+
         /**
          * Fonction qui retourne la frontière de Pareto en cours de construction par ce bâtisseur
          * @return une instance de ParetoFront avec les paramètres du batisseur
@@ -348,7 +592,7 @@ public final class ParetoFront {
 
 
             // On part du début dans les deux cas
-            int srcPos = 0;
+            int srcPos = offset;
             int desPos = 0;
 
             // On fait la copie de notre ancien tableau dans le nouveau
@@ -366,7 +610,8 @@ public final class ParetoFront {
 
             StringBuilder sb = new StringBuilder();
 
-            for (long pc : arrayInConstruction) {
+            for (int i = offset; i < offset + capacity; i++) {
+                long pc = arrayInConstruction[i];
                 sb.append(PackedCriteria.arrMins(pc))
                         .append("|")
                         .append(PackedCriteria.changes(pc))
@@ -378,4 +623,139 @@ public final class ParetoFront {
 
     }
 
+    /**
+     * Arène qui stocke dans un seul grand tableau les tuples de plusieurs bâtisseurs de frontières,
+     * chacun occupant une tranche (index de début et capacité) de ce tableau.
+     * Une tranche trop petite est remplacée par une nouvelle, deux fois plus grande, allouée à la fin
+     * du tableau (ou simplement prolongée si elle s'y trouve déjà). L'espace des anciennes tranches
+     * n'est pas réutilisé : il est libéré en une fois avec l'arène, une fois le profil construit,
+     * ou lorsque l'arène est vidée pour être réutilisée (avec ses bâtisseurs) par un autre calcul
+     */
+    static final class Slab {
+
+        // Capacité initiale du tableau partagé
+        private static final int INITIAL_SLAB_CAPACITY = 1 << 12;
+
+        // Taille approximative (en octets) d'un bâtisseur, et d'une référence
+        private static final int BUILDER_BYTES = 48;
+        private static final int REFERENCE_BYTES = 8;
+
+        // Tableau partagé, et index de sa première case libre
+        private long[] array = new long[INITIAL_SLAB_CAPACITY];
+        private int top = 0;
+
+        // Bâtisseurs dont les tuples sont dans l'arène, à mettre à jour lorsque le tableau est agrandi.
+        // Seuls les premiers sont utilisés, les autres attendent d'être réutilisés après un reset
+        private Builder[] builders = new Builder[64];
+        private int buildersCount = 0;
+        private int usedBuildersCount = 0;
+
+        // Bâtisseurs libérés, qui sont réutilisés (avec leur tranche) avant d'en attribuer de nouveaux
+        private Builder[] releasedBuilders = new Builder[64];
+        private int releasedBuildersCount = 0;
+
+        /**
+         * Fonction qui vide l'arène, en conservant son tableau et ses bâtisseurs pour les réutiliser.
+         * Les bâtisseurs fournis auparavant ne doivent plus être utilisés
+         */
+        void reset() {
+            top = 0;
+            usedBuildersCount = 0;
+            releasedBuildersCount = 0;
+        }
+
+        /**
+         * Fonction qui rend à l'arène un bâtisseur qu'elle a fourni et qui ne sera plus utilisé,
+         * afin que sa tranche soit réutilisée par le prochain bâtisseur demandé
+         * @param builder bâtisseur fourni par l'arène, qui ne doit plus être utilisé
+         * @throws IllegalArgumentException si le bâtisseur n'a pas été fourni par cette arène
+         */
+        void release(Builder builder) {
+            Preconditions.checkArgument(builder.slab == this);
+            if (releasedBuildersCount == releasedBuilders.length)
+                releasedBuilders = Arrays.copyOf(releasedBuilders, 2 * releasedBuildersCount);
+            releasedBuilders[releasedBuildersCount++] = builder;
+        }
+
+        /**
+         * Fonction qui retourne une estimation du nombre d'octets occupés en mémoire par l'arène,
+         * qui conserve son tableau et ses bâtisseurs d'une réinitialisation à l'autre
+         * @return le nombre d'octets (approximatif) occupés par l'arène
+         */
+        long retainedBytes() {
+            return (long) Long.BYTES * array.length
+                    + (long) BUILDER_BYTES * buildersCount
+                    + (long) REFERENCE_BYTES * (builders.length + releasedBuilders.length);
+        }
+
+        /**
+         * Fonction qui retourne un bâtisseur vide, dont les tuples sont stockés dans l'arène
+         * @return un bâtisseur de frontière vide
+         */
+        Builder newBuilder() {
+            if (releasedBuildersCount > 0) {
+                Builder builder = releasedBuilders[--releasedBuildersCount];
+                releasedBuilders[releasedBuildersCount] = null;
+                return builder.clear();
+            }
+            if (usedBuildersCount < buildersCount) {
+                Builder builder = builders[usedBuildersCount++];
+                builder.reinitialize();
+                return builder;
+            }
+
+            Builder builder = new Builder(this);
+            if (buildersCount == builders.length) builders = Arrays.copyOf(builders, 2 * buildersCount);
+            builders[buildersCount++] = builder;
+            usedBuildersCount = buildersCount;
+            return builder;
+        }
+
+        /**
+         * Fonction qui réserve une nouvelle tranche à la fin du tableau partagé
+         * @param capacity capacité de la tranche
+         * @return l'index de début de la tranche
+         */
+        private int allocate(int capacity) {
+            ensureRoom(capacity);
+            int offset = top;
+            top += capacity;
+            return offset;
+        }
+
+        /**
+         * Fonction qui remplace une tranche par une tranche plus grande, qui contient les mêmes tuples
+         * @param offset index de début de la tranche
+         * @param capacity capacité de la tranche
+         * @param newCapacity nouvelle capacité
+         * @param size nombre de tuples à conserver
+         * @return l'index de début de la nouvelle tranche
+         */
+        private int reallocate(int offset, int capacity, int newCapacity, int size) {
+
+            // La dernière tranche du tableau peut simplement être prolongée
+            if (offset + capacity == top) {
+                ensureRoom(newCapacity - capacity);
+                top += newCapacity - capacity;
+                return offset;
+            }
+
+            int newOffset = allocate(newCapacity);
+            System.arraycopy(array, offset, array, newOffset, size);
+            return newOffset;
+        }
+
+        /**
+         * Fonction qui agrandit si nécessaire le tableau partagé, afin qu'il lui reste au moins le nombre
+         * de cases libres donné, et qui le transmet à tous les bâtisseurs de l'arène
+         * @param room nombre de cases libres nécessaires
+         */
+        private void ensureRoom(int room) {
+            if (top + room > array.length) {
+                array = Arrays.copyOf(array, Math.max(2 * array.length, top + room));
+                for (int i = 0; i < buildersCount; i++) builders[i].arrayInConstruction = array;
+            }
+        }
+    }
+
 }
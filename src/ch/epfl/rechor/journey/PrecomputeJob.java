@@ -0,0 +1,309 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.Preconditions;
+import ch.epfl.rechor.timetable.CachedTimeTable;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.mapped.FileTimeTable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Classe qui représente une tâche de précalcul, sans interface graphique, des profils de toutes les gares
+ * d'arrivée d'un horaire, pour chacun des jours d'une période donnée. Les profils sont écrits dans un stock
+ * de profils (ProfileStore), où l'application les lit ensuite au lieu de les calculer.
+ * <p>
+ * Les profils d'un même jour sont calculés en parallèle, en partageant les données de ce jour. Le nombre
+ * de fils de calcul est limité de sorte que leurs espaces de travail, et les profils qu'ils n'ont pas encore
+ * écrits, tiennent dans le budget mémoire donné ; il est déterminé en mesurant la mémoire nécessaire
+ * au calcul d'un premier profil.
+ * <p>
+ * Chaque profil est écrit de manière atomique dès qu'il est calculé, et sert ainsi de point de reprise :
+ * si la tâche est interrompue (p. ex. par une panne), il suffit de la relancer pour qu'elle calcule
+ * uniquement les profils qui manquent encore dans le stock.
+ * <p>
+ * Les profils d'un jour dont les données sont identiques à celles d'un jour précédent de la période
+ * (voir TimeTable.dayContentKey), p. ex. un jour ouvrable d'une semaine ordinaire, ne sont pas recalculés :
+ * ceux du jour précédent sont relus et stockés à nouveau, à la date près.
+ * <p>
+ * Les gares d'arrivée peuvent être partagées entre plusieurs tâches (p. ex. dans des processus distincts,
+ * voir ShardedPrecompute), chacune ne calculant que les profils de sa part.
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+public final class PrecomputeJob {
+
+    // Marge appliquée à la mémoire mesurée lors du premier calcul, les profils de certaines gares
+    // pouvant demander davantage de mémoire que celui de la première
+    private static final int MEMORY_SAFETY_FACTOR = 2;
+
+    // Fraction de la mémoire maximale de la JVM utilisée comme budget par défaut
+    private static final double DEFAULT_MEMORY_FRACTION = 0.5;
+
+    private final TimeTable timeTable;
+    private final ProfileStore store;
+    private final int maxThreads;
+    private final long memoryBudgetBytes;
+
+    /**
+     * Bilan d'une exécution de la tâche de précalcul
+     * @param computedProfiles nombre de profils calculés et stockés
+     * @param reusedProfiles nombre de profils repris d'un jour précédent de même contenu, et stockés
+     * @param skippedProfiles nombre de profils qui étaient déjà dans le stock, et n'ont pas été recalculés
+     * @param threads nombre de fils de calcul utilisés (0 si aucun profil n'a été calculé)
+     * @param elapsed durée de l'exécution
+     */
+    public record Report(int computedProfiles, int reusedProfiles, int skippedProfiles, int threads,
+                         Duration elapsed) {
+
+        /**
+         * Constructeur compact, vérifiant que les nombres ne sont pas négatifs et que la durée n'est pas nulle
+         * @throws IllegalArgumentException si l'un des nombres est négatif
+         */
+        public Report {
+            Preconditions.checkArgument(
+                    computedProfiles >= 0 && reusedProfiles >= 0 && skippedProfiles >= 0 && threads >= 0);
+            Objects.requireNonNull(elapsed);
+        }
+
+        /**
+         * Méthode qui retourne le débit de la tâche, en profils calculés par seconde
+         * @return le nombre de profils calculés par seconde (0 si la durée est nulle)
+         */
+        public double profilesPerSecond() {
+            long nanos = elapsed.toNanos();
+            return nanos == 0 ? 0 : computedProfiles * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * Constructeur qui construit une tâche de précalcul des profils de l'horaire donné
+     * @param timeTable horaire, de la version du stock
+     * @param store stock dans lequel les profils sont écrits
+     * @param maxThreads nombre maximal de fils de calcul
+     * @param memoryBudgetBytes budget mémoire des calculs, en octets
+     * @throws IllegalArgumentException si le nombre de fils ou le budget n'est pas strictement positif
+     */
+    public PrecomputeJob(TimeTable timeTable, ProfileStore store, int maxThreads, long memoryBudgetBytes) {
+        Preconditions.checkArgument(maxThreads > 0 && memoryBudgetBytes > 0);
+        this.timeTable = Objects.requireNonNull(timeTable);
+        this.store = Objects.requireNonNull(store);
+        this.maxThreads = maxThreads;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * Méthode qui calcule et stocke les profils de toutes les gares d'arrivée, pour tous les jours
+     * de la période donnée, à l'exception de ceux qui sont déjà dans le stock
+     * @param firstDate premier jour de la période
+     * @param lastDate dernier jour de la période (inclus)
+     * @param progress fonction appelée après chaque jour avec le bilan de la tâche jusque-là
+     * @return le bilan de la tâche
+     * @throws IllegalArgumentException si le dernier jour précède le premier
+     * @throws IOException en cas d'erreur d'écriture d'un profil (les profils déjà écrits restent dans le stock)
+     * @throws InterruptedException si le fil d'exécution appelant est interrompu pendant l'attente
+     */
+    public Report run(LocalDate firstDate, LocalDate lastDate, Consumer<Report> progress)
+            throws IOException, InterruptedException {
+        return run(firstDate, lastDate, 0, 1, progress);
+    }
+
+    /**
+     * Méthode qui calcule et stocke les profils des gares d'arrivée de la part d'index donné, pour tous
+     * les jours de la période donnée, à l'exception de ceux qui sont déjà dans le stock. Les gares sont
+     * réparties entre les parts de manière entrelacée (la gare d'index i appartient à la part i modulo
+     * le nombre de parts), afin que les gares les plus coûteuses, souvent voisines, soient réparties entre elles
+     * @param firstDate premier jour de la période
+     * @param lastDate dernier jour de la période (inclus)
+     * @param shardIndex index de la part
+     * @param shardCount nombre de parts
+     * @param progress fonction appelée après chaque jour avec le bilan de la tâche jusque-là
+     * @return le bilan de la tâche
+     * @throws IllegalArgumentException si le dernier jour précède le premier, si le nombre de parts
+     * n'est pas strictement positif, ou si l'index de la part est invalide
+     * @throws IOException en cas d'erreur d'écriture d'un profil (les profils déjà écrits restent dans le stock)
+     * @throws InterruptedException si le fil d'exécution appelant est interrompu pendant l'attente
+     */
+    public Report run(LocalDate firstDate, LocalDate lastDate, int shardIndex, int shardCount,
+                      Consumer<Report> progress) throws IOException, InterruptedException {
+        Preconditions.checkArgument(!lastDate.isBefore(firstDate));
+        Preconditions.checkArgument(shardCount > 0 && 0 <= shardIndex && shardIndex < shardCount);
+        Objects.requireNonNull(progress);
+
+        long startNanos = System.nanoTime();
+        int stationsCount = timeTable.stations().size();
+        int computed = 0;
+        int reused = 0;
+        int skipped = 0;
+
+        // Les jours étant traités dans l'ordre, l'horaire ne garde en cache que les données du jour courant,
+        // ainsi que les clés de contenu de tous les jours (dont le calcul lit tous les fichiers du jour).
+        // Il est partagé par tous les fils de calcul du jour
+        Router router = new Router(new CachedTimeTable(timeTable, 1));
+        TimeTable cachedTimeTable = router.timetable();
+
+        // Premier jour de la période ayant chaque contenu, dont les profils peuvent être repris
+        Map<String, LocalDate> contentDates = new HashMap<>();
+        int threads = 0;
+        ExecutorService executor = null;
+        try {
+            for (LocalDate date = firstDate; !date.isAfter(lastDate); date = date.plusDays(1)) {
+
+                // Les gares dont le profil est déjà stocké ont été calculées lors d'une exécution précédente
+                List<Integer> pending = new ArrayList<>();
+                for (int arrStationId = shardIndex; arrStationId < stationsCount; arrStationId += shardCount) {
+                    if (store.contains(date, arrStationId)) skipped += 1;
+                    else pending.add(arrStationId);
+                }
+
+                // Les profils d'un jour de même contenu déjà traité sont simplement repris
+                LocalDate sameContentDate = contentDates.putIfAbsent(cachedTimeTable.dayContentKey(date), date);
+                if (sameContentDate != null) {
+                    for (Iterator<Integer> it = pending.iterator(); it.hasNext(); ) {
+                        int arrStationId = it.next();
+                        Optional<Profile> profile = store.load(timeTable, sameContentDate, arrStationId);
+                        if (profile.isPresent()) {
+                            store.store(new Profile(timeTable, date, arrStationId, profile.get().stationFront()));
+                            reused += 1;
+                            it.remove();
+                        }
+                    }
+                }
+
+                if (!pending.isEmpty()) {
+                    // Le premier profil est calculé par le fil appelant, afin de mesurer la mémoire
+                    // nécessaire à un calcul, qui détermine le nombre de fils de calcul
+                    if (executor == null) {
+                        long bytesPerThread = computeAndStore(router, date, pending.removeFirst());
+                        computed += 1;
+                        threads = threadsFor(bytesPerThread);
+                        executor = Executors.newFixedThreadPool(threads);
+                    }
+                    computed += computeAndStoreAll(executor, router, date, pending);
+                }
+
+                progress.accept(new Report(computed, reused, skipped, threads,
+                        Duration.ofNanos(System.nanoTime() - startNanos)));
+            }
+        } finally {
+            if (executor != null) executor.shutdownNow();
+        }
+        return new Report(computed, reused, skipped, threads, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Fonction qui retourne le nombre de fils de calcul pouvant être utilisés, sachant la mémoire
+     * nécessaire à chacun d'entre eux
+     * @param bytesPerThread nombre d'octets nécessaires à un fil de calcul
+     * @return le nombre de fils de calcul, compris entre 1 et le nombre maximal de fils
+     */
+    private int threadsFor(long bytesPerThread) {
+        long affordable = memoryBudgetBytes / Math.max(1, MEMORY_SAFETY_FACTOR * bytesPerThread);
+        return Math.clamp(affordable, 1, maxThreads);
+    }
+
+    /**
+     * Fonction qui calcule et stocke en parallèle, au moyen de l'exécuteur donné, les profils des gares données
+     * @param executor exécuteur sur lequel les profils sont calculés
+     * @param router routeur partagé par les calculs
+     * @param date date des profils
+     * @param arrStationIds gares d'arrivée des profils
+     * @return le nombre de profils calculés
+     * @throws IOException en cas d'erreur d'écriture d'un profil
+     * @throws InterruptedException si le fil d'exécution appelant est interrompu pendant l'attente
+     */
+    private int computeAndStoreAll(ExecutorService executor, Router router, LocalDate date,
+                                   List<Integer> arrStationIds) throws IOException, InterruptedException {
+        List<Callable<Long>> tasks = new ArrayList<>(arrStationIds.size());
+        for (int arrStationId : arrStationIds)
+            tasks.add(() -> computeAndStore(router, date, arrStationId));
+
+        for (Future<Long> future : executor.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // On relance telle quelle l'exception levée par le calcul ou l'écriture du profil
+                if (e.getCause() instanceof IOException ioException) throw ioException;
+                if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+                if (e.getCause() instanceof Error error) throw error;
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return tasks.size();
+    }
+
+    /**
+     * Fonction qui calcule le profil de la gare et de la date données, et l'écrit dans le stock
+     * @param router routeur
+     * @param date date du profil
+     * @param arrStationId gare d'arrivée du profil
+     * @return une estimation du nombre d'octets nécessaires au calcul, soit un espace de travail du routeur,
+     * ainsi que le profil et sa copie destinée à l'écriture
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    private long computeAndStore(Router router, LocalDate date, int arrStationId) throws IOException {
+        Profile profile = router.profile(date, arrStationId);
+        store.store(profile);
+
+        int stationsCount = profile.stationFront().size();
+        long profileBytes = (long) Integer.BYTES * (stationsCount + 1);
+        for (int stationId = 0; stationId < stationsCount; stationId++)
+            profileBytes += (long) Long.BYTES * profile.forStation(stationId).size();
+        return Router.workspaceBytes() + 2 * profileBytes;
+    }
+
+    /**
+     * Point d'entrée de la tâche de précalcul, dont les arguments sont, dans l'ordre :
+     * le répertoire de l'horaire, le répertoire du stock de profils, le premier jour de la période,
+     * et éventuellement le dernier jour (par défaut le premier), le nombre maximal de fils de calcul
+     * (par défaut le nombre de processeurs), le budget mémoire en mébioctets (par défaut la moitié
+     * de la mémoire maximale de la JVM), ainsi que l'index de la part des gares à calculer et le nombre
+     * de parts (par défaut 0 et 1, soit toutes les gares)
+     * @param args arguments
+     * @throws IOException en cas d'erreur de lecture de l'horaire ou d'écriture d'un profil
+     * @throws InterruptedException si la tâche est interrompue
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3 || args.length > 8 || args.length == 7) {
+            System.err.println("Usage : PrecomputeJob <horaire> <profils> <premier jour> [dernier jour] "
+                    + "[fils] [budget (Mio)] [part nombre de parts]");
+            System.exit(2);
+        }
+
+        Path timeTableDirectory = Path.of(args[0]);
+        LocalDate firstDate = LocalDate.parse(args[2]);
+        LocalDate lastDate = args.length > 3 ? LocalDate.parse(args[3]) : firstDate;
+        int maxThreads = args.length > 4
+                ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors();
+        long memoryBudgetBytes = args.length > 5
+                ? Long.parseLong(args[5]) << 20
+                : (long) (Runtime.getRuntime().maxMemory() * DEFAULT_MEMORY_FRACTION);
+        int shardIndex = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+        int shardCount = args.length > 7 ? Integer.parseInt(args[7]) : 1;
+
+        ProfileStore store = new ProfileStore(Path.of(args[1]), ProfileStore.versionOf(timeTableDirectory));
+        PrecomputeJob job = new PrecomputeJob(
+                FileTimeTable.in(timeTableDirectory), store, maxThreads, memoryBudgetBytes);
+        Report report = job.run(firstDate, lastDate, shardIndex, shardCount, r -> System.out.printf(
+                "%d profils calculés, %d repris, %d déjà stockés, %d fils, %.1f profils/s%n",
+                r.computedProfiles(), r.reusedProfiles(), r.skippedProfiles(), r.threads(), r.profilesPerSecond()));
+        System.out.printf("Terminé en %d s : %d profils calculés, %.1f profils/s%n",
+                report.elapsed().toSeconds(), report.computedProfiles(), report.profilesPerSecond());
+    }
+}
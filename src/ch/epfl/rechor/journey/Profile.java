@@ -5,8 +5,8 @@ import ch.epfl.rechor.timetable.TimeTable;
 import ch.epfl.rechor.timetable.Trips;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Représente un profil
@@ -21,8 +21,11 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId, Lis
      */
     public Profile {
 
-        // il faut copier la table des frontières de Pareto afin de garantir l'immuabilité de la classe
-        stationFront = List.copyOf(stationFront);
+        // il faut copier la table des frontières de Pareto afin de garantir l'immuabilité de la classe,
+        // sauf si elle est déjà dans une représentation immuable du paquetage (p. ex. sous forme compacte,
+        // construite par Profile.Builder)
+        if (!(stationFront instanceof ImmutableStationFronts))
+            stationFront = List.copyOf(stationFront);
     }
 
     /**
@@ -63,6 +66,17 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId, Lis
 
     }
 
+    /**
+     * Méthode qui retourne un profil identique à celui-ci, mais dont les frontières de Pareto sont stockées
+     * sous forme compressée (d'environ 4 à 5 octets par tuple au lieu de 8), destinée aux profils conservés
+     * longtemps en mémoire (p. ex. dans un cache). Chaque appel à forStation décode alors la frontière demandée
+     * @return le profil compressé (ou ce profil, s'il l'est déjà)
+     */
+    public Profile compressed() {
+        if (stationFront instanceof CompressedStationFronts) return this;
+        return new Profile(timeTable, date, arrStationId, CompressedStationFronts.of(stationFront));
+    }
+
     /**
      * Classe qui représente un bâtisseur de profil
      *  @author Yoann Salamin (390522)
@@ -76,11 +90,13 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId, Lis
         private final LocalDate currentLocalDate;
         private final int currentArrStationId;
 
-        // tableau qui contient les bâtisseurs des frontières de Pareto des gares
-        private final ParetoFront.Builder[] paretoFrontStationList;
+        // nombre de gares de l'horaire
+        private final int numberOfStations;
 
-        // tableau qui contient les bâtisseurs des frontières de Pareto des courses
-        private final ParetoFront.Builder[]  paretoFrontTripsList;
+        // espace de travail qui contient les bâtisseurs des frontières de Pareto des gares et des courses,
+        // ainsi que l'arène qui contient les tuples de toutes les frontières créées par newFront, ce qui évite
+        // d'allouer un petit tableau (agrandi indépendamment des autres) par gare et par course
+        private final RoutingWorkspace workspace;
 
 
         /**
@@ -90,6 +106,19 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId, Lis
          * @param arrStationId gare de destination donnée
          */
         public Builder(TimeTable timeTable, LocalDate date, int arrStationId) {
+            this(timeTable, date, arrStationId, new RoutingWorkspace());
+        }
+
+        /**
+         * Constructeur qui construit un bâtisseur de profil pour l'horaire, la date et la gare de destination
+         * donnés, dont les frontières sont stockées dans l'espace de travail donné, qui est réinitialisé.
+         * Le bâtisseur n'est valide que jusqu'à la prochaine réinitialisation de l'espace de travail
+         * @param timeTable horaire donné
+         * @param date date donnée
+         * @param arrStationId gare de destination donnée
+         * @param workspace espace de travail réutilisable
+         */
+        Builder(TimeTable timeTable, LocalDate date, int arrStationId, RoutingWorkspace workspace) {
 
 
             // On stocke les valeurs données dans nos attributs d'instance
@@ -98,13 +127,13 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId, Lis
             this.currentArrStationId = arrStationId;
 
 
-            // On initialise les deux tableaux primitifs qui stockent les frontières de Pareto
-            // on doit d'abord récupérer la taille des tableaux à l'aide de l'instance de
+            // On prépare l'espace de travail qui stocke les frontières de Pareto
+            // on doit d'abord récupérer la taille des tables à l'aide de l'instance de
             // timetable
-            int numberOfStations = timeTable.stations().size();
+            this.numberOfStations = timeTable.stations().size();
             int numberOfTripsCurrentDay = timeTable.tripsFor(date).size();
-            paretoFrontStationList = new ParetoFront.Builder[numberOfStations];
-            paretoFrontTripsList = new ParetoFront.Builder[numberOfTripsCurrentDay];
+            this.workspace = workspace;
+            workspace.reset(numberOfStations, numberOfTripsCurrentDay);
 
         }
 
@@ -117,10 +146,10 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId, Lis
          */
         public ParetoFront.Builder forStation(int stationId) {
 
-            // on retourne simplement le bon élément dans le tableau
+            // on retourne simplement le bon élément de l'espace de travail
             // la valeur est bien null si aucun appel à setForstation n'a
-            // été fait, car le tableau est initialisé avec de null;
-            return paretoFrontStationList[stationId];
+            // été fait depuis sa réinitialisation
+            return workspace.stationFront(stationId);
         }
 
         /**
@@ -131,8 +160,8 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId, Lis
          */
         public void setForStation(int stationId, ParetoFront.Builder builder) {
 
-            // On met simplement le builder au bon endroit dans la liste
-            paretoFrontStationList[stationId] = builder;
+            // On met simplement le builder au bon endroit dans l'espace de travail
+            workspace.setStationFront(stationId, builder);
         }
 
         /**
@@ -143,10 +172,10 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId, Lis
          */
         public ParetoFront.Builder forTrip(int tripId) {
 
-            // on retourne simplement le bon élément dans le tableau
-            // la valeur est bien nulle si aucun appel à setForstation n'a
-            // été fait, car le tableau est initialisé avec que des null
-            return paretoFrontTripsList[tripId];
+            // on retourne simplement le bon élément de l'espace de travail
+            // la valeur est bien nulle si aucun appel à setForTrip n'a
+            // été fait depuis sa réinitialisation
+            return workspace.tripFront(tripId);
         }
 
         /**
@@ -157,8 +186,28 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId, Lis
          */
         public void setForTrip(int tripId, ParetoFront.Builder builder) {
 
-            // On met simplement le builder au bon endroit dans la liste
-            paretoFrontTripsList[tripId] = builder;
+            // On met simplement le builder au bon endroit dans l'espace de travail
+            workspace.setTripFront(tripId, builder);
+        }
+
+        /**
+         * Fonction qui libère le bâtisseur de la frontière de Pareto de la course d'index donné, s'il existe,
+         * lorsqu'il ne sera plus utilisé : forTrip retourne ensuite null pour cette course,
+         * et son espace est réutilisé par le prochain bâtisseur créé par newFront
+         * @param tripId course d'index donné
+         * @throws IndexOutOfBoundsException si l'index est invalide
+         */
+        void releaseForTrip(int tripId) {
+            workspace.releaseTripFront(tripId);
+        }
+
+        /**
+         * Fonction qui retourne un nouveau bâtisseur de frontière de Pareto vide, dont les tuples sont
+         * stockés dans l'arène du bâtisseur de profil. Il ne doit être utilisé que tant que ce dernier existe
+         * @return un bâtisseur de frontière vide
+         */
+        ParetoFront.Builder newFront() {
+            return workspace.newFront();
         }
 
         /**
@@ -168,26 +217,68 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId, Lis
          */
         public Profile build() {
 
-            // Construction de la liste contenant les frontières de Pareto
-            List<ParetoFront> paretoFrontList = new ArrayList<>();
-
-            // on itère sur tous les builders
-            for (ParetoFront.Builder bld : paretoFrontStationList) {
-                // on ne peut appeler que les builders qui ne sont
-                // pas nuls
-                if (bld == null) {
-                    paretoFrontList.add(ParetoFront.EMPTY);
-                } else {
-                    // en ajoute le Profile dans notre liste
-                    // en appelant le builder
-                    paretoFrontList.add(bld.build());
-                }
+            // Les frontières de toutes les gares sont stockées à la suite dans un seul tableau,
+            // la frontière de la gare i occupant les index offsets[i] (inclus) à offsets[i + 1] (exclu).
+            // On calcule d'abord la taille de ce tableau, les builders nuls correspondant à des frontières vides
+            int[] offsets = new int[numberOfStations + 1];
+            for (int stationId = 0; stationId < numberOfStations; stationId++) {
+                ParetoFront.Builder bld = workspace.stationFront(stationId);
+                offsets[stationId + 1] = offsets[stationId] + (bld == null ? 0 : bld.size());
+            }
+
+            // puis on y copie les tuples de chacune des frontières
+            long[] tuples = new long[offsets[numberOfStations]];
+            for (int stationId = 0; stationId < numberOfStations; stationId++) {
+                ParetoFront.Builder bld = workspace.stationFront(stationId);
+                if (bld != null) bld.copyTo(tuples, offsets[stationId]);
             }
 
-            return new Profile(currentTimetable, currentLocalDate, currentArrStationId, paretoFrontList);
+            return new Profile(currentTimetable, currentLocalDate, currentArrStationId,
+                    new CompactStationFronts(tuples, offsets));
         }
 
 
     }
 
+    /**
+     * Liste immuable des frontières de Pareto des gares d'un profil, sous forme compacte : les tuples de toutes
+     * les frontières sont stockés à la suite dans un seul tableau, et une table donne l'index du début de chacune.
+     * Une gare dont la frontière est vide ne coûte donc qu'une entrée de cette table, et les frontières retournées
+     * par get sont des vues sur le tableau partagé
+     */
+    private static final class CompactStationFronts extends ImmutableStationFronts {
+
+        // tuples de toutes les frontières, à la suite
+        private final long[] tuples;
+
+        // index du début de la frontière de chaque gare, suivi du nombre total de tuples
+        private final int[] offsets;
+
+        /**
+         * Constructeur qui stocke les tableaux donnés sans les copier
+         * @param tuples tuples de toutes les frontières, à la suite
+         * @param offsets index du début de la frontière de chaque gare, suivi du nombre total de tuples
+         */
+        private CompactStationFronts(long[] tuples, int[] offsets) {
+            this.tuples = tuples;
+            this.offsets = offsets;
+        }
+
+        @Override
+        public ParetoFront get(int stationId) {
+            Objects.checkIndex(stationId, size());
+            return ParetoFront.view(tuples, offsets[stationId], offsets[stationId + 1]);
+        }
+
+        @Override
+        public int size() {
+            return offsets.length - 1;
+        }
+
+        @Override
+        long heapBytes() {
+            return (long) Long.BYTES * tuples.length + (long) Integer.BYTES * offsets.length;
+        }
+    }
+
 }
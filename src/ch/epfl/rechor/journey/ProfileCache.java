@@ -0,0 +1,293 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.Preconditions;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Classe qui représente un cache de profils, dont la taille est limitée par un budget mémoire : la taille
+ * de chaque profil est estimée, et lorsque leur somme dépasse le budget, les profils utilisés le moins
+ * récemment sont retirés du cache. Le cache peut aussi surveiller la mémoire de la JVM, et se réduire
+ * de moitié lorsque le tas est presque plein après un passage du ramasse-miettes.
+ * Les nombres de succès, d'échecs et de retraits sont comptés.
+ * Le cache peut être utilisé par plusieurs fils d'exécution à la fois : des demandes simultanées d'un même
+ * profil absent du cache (p. ex. de nombreux utilisateurs cherchant à quitter un stade à la fin d'un match)
+ * attendent alors un seul et même calcul, dont elles partagent le résultat.
+ * @param <K> le type des clés des profils (p. ex. la date, ou le contenu du jour, et la gare d'arrivée)
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+public final class ProfileCache<K> implements AutoCloseable {
+
+    // Taille approximative d'une entrée du cache (clé, profil, nœud de la table), en plus de ses frontières
+    private static final long ENTRY_BYTES = 256;
+
+    // Taille approximative d'une frontière d'une liste ordinaire, en plus de ses tuples
+    private static final long FRONT_BYTES = 32;
+
+    // Fraction de sa taille que le cache conserve lorsque le tas est presque plein
+    private static final double RETAINED_FRACTION_ON_PRESSURE = 0.5;
+
+    /**
+     * Statistiques du cache
+     * @param hits nombre de profils demandés qui étaient dans le cache
+     * @param misses nombre de profils demandés qui n'étaient pas dans le cache
+     * @param coalesced nombre de profils demandés qui n'étaient pas dans le cache, mais déjà en cours de calcul,
+     *                  et dont le calcul a donc été évité
+     * @param evictions nombre de profils retirés du cache, faute de place
+     * @param size nombre de profils dans le cache
+     * @param bytes taille estimée des profils du cache, en octets
+     */
+    public record Stats(long hits, long misses, long coalesced, long evictions, int size, long bytes) {}
+
+    // Profil du cache, et sa taille estimée
+    private record Entry(Profile profile, long bytes) {}
+
+    private final long budgetBytes;
+
+    // Entrées du cache, dans l'ordre de leur dernière utilisation (de la plus ancienne à la plus récente)
+    private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    // Calculs en cours, dont le résultat est attendu par toutes les demandes du même profil
+    private final Map<K, CompletableFuture<Profile>> inFlight = new HashMap<>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long coalesced = 0;
+    private long evictions = 0;
+
+    // Écouteur des notifications de la mémoire de la JVM, ou null si elle n'est pas surveillée
+    private NotificationListener heapPressureListener = null;
+
+    /**
+     * Constructeur qui construit un cache vide, dont les profils ne dépassent pas le budget mémoire donné
+     * @param budgetBytes budget mémoire, en octets
+     * @throws IllegalArgumentException si le budget n'est pas strictement positif
+     */
+    public ProfileCache(long budgetBytes) {
+        Preconditions.checkArgument(budgetBytes > 0);
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Fonction qui retourne une estimation du nombre d'octets retenus par le profil donné. Les frontières
+     * d'un profil projeté en mémoire (voir ProfileStore) ne sont pas dans le tas, mais la projection de son
+     * fichier est comptée : sans cela, le budget ne limiterait pas le nombre de projections ouvertes
+     * @param profile le profil
+     * @return le nombre d'octets (approximatif) retenus par le profil, dans le tas ou projetés en mémoire
+     */
+    static long estimatedBytes(Profile profile) {
+        List<ParetoFront> stationFront = profile.stationFront();
+        if (stationFront instanceof ImmutableStationFronts immutable)
+            return ENTRY_BYTES + immutable.heapBytes() + immutable.mappedBytes();
+
+        long bytes = ENTRY_BYTES;
+        for (ParetoFront front : stationFront) bytes += FRONT_BYTES + (long) Long.BYTES * front.size();
+        return bytes;
+    }
+
+    /**
+     * Méthode qui retourne le profil associé à la clé donnée, s'il est dans le cache
+     * @param key la clé
+     * @return le profil associé à la clé, ou null s'il n'est pas dans le cache
+     */
+    public synchronized Profile get(K key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        return entry.profile();
+    }
+
+    /**
+     * Méthode qui retourne le profil associé à la clé donnée, en le calculant au moyen de la fonction donnée
+     * et en l'ajoutant au cache s'il n'y est pas. Le calcul a lieu hors de tout verrou, et un seul calcul
+     * par clé a lieu à la fois : les demandes simultanées du même profil attendent la fin du calcul en cours
+     * et en partagent le résultat (ou l'exception). Seule l'annulation d'un calcul (CancellationException,
+     * p. ex. parce que la requête qui l'a lancé a changé) n'est pas partagée : les demandes qui l'attendaient
+     * relancent alors le calcul
+     * @param key la clé
+     * @param compute la fonction qui calcule le profil associé à une clé
+     * @return le profil associé à la clé
+     * @throws CancellationException si le calcul lancé par cet appel a été annulé
+     */
+    public Profile getOrCompute(K key, Function<? super K, Profile> compute) {
+        while (true) {
+            CompletableFuture<Profile> future;
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    hits += 1;
+                    return entry.profile();
+                }
+                misses += 1;
+
+                future = inFlight.get(key);
+                if (future == null) {
+                    inFlight.put(key, new CompletableFuture<>());
+                } else {
+                    coalesced += 1;
+                }
+            }
+            if (future == null) return compute(key, compute);
+
+            Profile profile = awaitInFlight(future);
+            if (profile != null) return profile;
+        }
+    }
+
+    // Calcule le profil associé à la clé donnée, l'ajoute au cache puis le transmet aux demandes en attente
+    private Profile compute(K key, Function<? super K, Profile> compute) {
+        Profile profile;
+        try {
+            profile = Objects.requireNonNull(compute.apply(key));
+        } catch (RuntimeException | Error e) {
+            CompletableFuture<Profile> future;
+            synchronized (this) {
+                future = inFlight.remove(key);
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+
+        // Le profil est ajouté au cache en même temps que son calcul est retiré des calculs en cours,
+        // afin que toute demande ultérieure le trouve dans l'un ou dans l'autre
+        CompletableFuture<Profile> future;
+        synchronized (this) {
+            future = inFlight.remove(key);
+            put(key, profile);
+        }
+        future.complete(profile);
+        return profile;
+    }
+
+    // Attend la fin du calcul en cours donné, et retourne son résultat ou lance son exception,
+    // ou retourne null s'il a été annulé
+    private static Profile awaitInFlight(CompletableFuture<Profile> future) {
+        try {
+            return future.join();
+        } catch (CancellationException e) {
+            return null;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Méthode qui ajoute au cache le profil donné, associé à la clé donnée (en remplaçant celui qui lui était
+     * éventuellement associé), puis retire du cache les profils utilisés le moins récemment, jusqu'à ce que
+     * le budget soit respecté. Un profil plus grand que le budget n'est pas ajouté
+     * @param key la clé
+     * @param profile le profil
+     */
+    public synchronized void put(K key, Profile profile) {
+        Entry entry = new Entry(Objects.requireNonNull(profile), estimatedBytes(profile));
+        Entry previous = entries.remove(Objects.requireNonNull(key));
+        if (previous != null) bytes -= previous.bytes();
+        if (entry.bytes() > budgetBytes) return;
+
+        entries.put(key, entry);
+        bytes += entry.bytes();
+        shrinkTo(budgetBytes);
+    }
+
+    /**
+     * Méthode qui retire du cache les profils utilisés le moins récemment, jusqu'à ce que leur taille
+     * ne dépasse plus la taille donnée
+     * @param targetBytes la taille maximale des profils du cache, en octets
+     */
+    public synchronized void shrinkTo(long targetBytes) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > targetBytes && it.hasNext()) {
+            bytes -= it.next().bytes();
+            it.remove();
+            evictions += 1;
+        }
+    }
+
+    /**
+     * Méthode qui vide le cache (sans compter de retraits)
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Méthode qui retourne les statistiques du cache
+     * @return les statistiques du cache
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, coalesced, evictions, entries.size(), bytes);
+    }
+
+    /**
+     * Méthode qui fait surveiller au cache la mémoire de la JVM : lorsque, après un passage du ramasse-miettes,
+     * l'occupation d'une zone du tas dépasse la fraction donnée de sa taille maximale, le cache se réduit
+     * de moitié. Le seuil est celui des zones du tas de la JVM, il est donc partagé avec tout autre
+     * composant qui les surveillerait
+     * @param usageFraction la fraction de la taille maximale des zones du tas au-delà de laquelle
+     *                      le cache se réduit
+     * @throws IllegalArgumentException si la fraction n'est pas strictement comprise entre 0 et 1,
+     * ou si la mémoire est déjà surveillée
+     */
+    public synchronized void watchHeapPressure(double usageFraction) {
+        Preconditions.checkArgument(0 < usageFraction && usageFraction < 1 && heapPressureListener == null);
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0)
+                pool.setCollectionUsageThreshold((long) (max * usageFraction));
+        }
+
+        heapPressureListener = (notification, handback) -> {
+            if (notification.getType().equals(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED))
+                onHeapPressure();
+        };
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+                .addNotificationListener(heapPressureListener, null, null);
+    }
+
+    /**
+     * Méthode qui réduit le cache de moitié, appelée lorsque le tas est presque plein
+     */
+    synchronized void onHeapPressure() {
+        shrinkTo((long) (bytes * RETAINED_FRACTION_ON_PRESSURE));
+    }
+
+    /**
+     * Méthode qui arrête la surveillance de la mémoire de la JVM, si elle a été demandée
+     */
+    @Override
+    public synchronized void close() {
+        if (heapPressureListener == null) return;
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+                    .removeNotificationListener(heapPressureListener);
+        } catch (ListenerNotFoundException e) {
+            // L'écouteur a déjà été retiré, il n'y a rien à faire
+        }
+        heapPressureListener = null;
+    }
+}
@@ -0,0 +1,288 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.Preconditions;
+import ch.epfl.rechor.timetable.TimeTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Classe qui représente un stock de profils persistés sur disque, identifiés par la version de l'horaire,
+ * la date et la gare d'arrivée. Chaque profil est écrit une seule fois, dans un fichier binaire,
+ * puis relu en projetant ce fichier en mémoire, en lecture seule et sans copie : plusieurs processus
+ * (p. ex. plusieurs JVM d'un même serveur) peuvent ainsi partager les mêmes profils précalculés,
+ * sans les recalculer ni les dupliquer dans leur tas.
+ * <p>
+ * Le profil de la gare d'arrivée a, le jour d, pour l'horaire de version v, est stocké dans le fichier
+ * {@code v/d/a.profile} du répertoire du stock. Ce fichier contient, en ordre d'octets big-endian :
+ * <ul>
+ *     <li>un en-tête de 28 octets : le nombre magique, la version du format, le jour (nombre de jours depuis
+ *     le 1er janvier 1970, sur 8 octets), la gare d'arrivée, le nombre de gares et le nombre total de tuples,</li>
+ *     <li>l'index du premier tuple de la frontière de chaque gare, suivi du nombre total de tuples (entiers),</li>
+ *     <li>les tuples de toutes les frontières, à la suite (entiers longs).</li>
+ * </ul>
+ * Un fichier est d'abord écrit sous un nom temporaire, puis renommé de manière atomique :
+ * un autre processus ne voit donc jamais de fichier incomplet.
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+public final class ProfileStore {
+
+    // Nombre magique ("RCPF") et version du format des fichiers
+    private static final int MAGIC = 0x52435046;
+    private static final int FORMAT_VERSION = 1;
+
+    // Taille de l'en-tête, en octets
+    private static final int HEADER_BYTES = 5 * Integer.BYTES + Long.BYTES;
+
+    // Extension des fichiers de profils
+    private static final String EXTENSION = ".profile";
+
+    // Caractères autorisés dans une version d'horaire, qui sert de nom de répertoire
+    private static final Pattern VERSION_PATTERN = Pattern.compile("[A-Za-z0-9._-]+");
+
+    // Nombre d'octets (de l'empreinte SHA-256) utilisés par versionOf
+    private static final int VERSION_BYTES = 8;
+
+    private final Path directory;
+    private final String timeTableVersion;
+
+    /**
+     * Constructeur qui construit un stock de profils dans le répertoire donné,
+     * pour l'horaire de version donnée
+     * @param directory répertoire du stock, créé au besoin lors de la première écriture
+     * @param timeTableVersion version de l'horaire (p. ex. obtenue avec versionOf), formée uniquement
+     *                         de lettres ASCII, de chiffres, de points, de tirets et de soulignés
+     * @throws IllegalArgumentException si la version contient d'autres caractères, ou est "." ou ".."
+     */
+    public ProfileStore(Path directory, String timeTableVersion) {
+        Preconditions.checkArgument(VERSION_PATTERN.matcher(timeTableVersion).matches()
+                && !timeTableVersion.equals(".") && !timeTableVersion.equals(".."));
+        this.directory = Objects.requireNonNull(directory);
+        this.timeTableVersion = timeTableVersion;
+    }
+
+    /**
+     * Méthode qui calcule une version de l'horaire stocké dans le répertoire donné, qui change dès que l'un
+     * de ses fichiers est ajouté, supprimé ou modifié. Elle est calculée à partir du chemin, de la taille et de
+     * la date de modification de chacun des fichiers, sans les lire
+     * @param timeTableDirectory répertoire de l'horaire
+     * @return la version de l'horaire, formée de 16 chiffres hexadécimaux
+     * @throws IOException en cas d'erreur de parcours du répertoire
+     */
+    public static String versionOf(Path timeTableDirectory) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Toute plateforme Java doit fournir SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(timeTableDirectory)) {
+            files = paths.filter(Files::isRegularFile).sorted().toList();
+        }
+        for (Path file : files) {
+            String description = timeTableDirectory.relativize(file) + "|" + Files.size(file)
+                    + "|" + Files.getLastModifiedTime(file).toMillis() + "\n";
+            digest.update(description.getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, VERSION_BYTES);
+    }
+
+    /**
+     * Méthode qui retourne le chemin du fichier du profil de la date et de la gare d'arrivée données
+     * @param date date du profil
+     * @param arrStationId gare d'arrivée du profil
+     * @return le chemin du fichier, qui n'existe pas forcément
+     */
+    public Path pathFor(LocalDate date, int arrStationId) {
+        return directory.resolve(timeTableVersion).resolve(date.toString()).resolve(arrStationId + EXTENSION);
+    }
+
+    /**
+     * Méthode qui retourne vrai si et seulement si le profil de la date et de la gare d'arrivée données
+     * a déjà été stocké
+     * @param date date du profil
+     * @param arrStationId gare d'arrivée du profil
+     * @return vrai si le profil est stocké
+     */
+    public boolean contains(LocalDate date, int arrStationId) {
+        return Files.isRegularFile(pathFor(date, arrStationId));
+    }
+
+    /**
+     * Méthode qui lit le profil de la date et de la gare d'arrivée données, s'il a été stocké, en projetant
+     * son fichier en mémoire. Les frontières de ses gares sont lues dans le fichier à chaque appel de forStation
+     * @param timeTable horaire (de la version du stock) auquel correspond le profil
+     * @param date date du profil
+     * @param arrStationId gare d'arrivée du profil
+     * @return le profil, ou rien s'il n'a pas été stocké
+     * @throws IOException en cas d'erreur de lecture, ou si le fichier est invalide ou ne correspond pas
+     * à l'horaire, à la date ou à la gare donnés
+     */
+    public Optional<Profile> load(TimeTable timeTable, LocalDate date, int arrStationId) throws IOException {
+        Path path = pathFor(date, arrStationId);
+        if (!Files.isRegularFile(path)) return Optional.empty();
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int stationsCount = timeTable.stations().size();
+        int offsetsPosition = HEADER_BYTES;
+        int tuplesPosition = offsetsPosition + Integer.BYTES * (stationsCount + 1);
+        boolean valid = buffer.capacity() >= tuplesPosition
+                && buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == FORMAT_VERSION
+                && buffer.getLong(8) == date.toEpochDay()
+                && buffer.getInt(16) == arrStationId
+                && buffer.getInt(20) == stationsCount;
+        if (valid) {
+            int tuplesCount = buffer.getInt(24);
+            valid = tuplesCount >= 0
+                    && buffer.capacity() == tuplesPosition + (long) Long.BYTES * tuplesCount
+                    && buffer.getInt(offsetsPosition) == 0
+                    && buffer.getInt(tuplesPosition - Integer.BYTES) == tuplesCount;
+
+            // Les index doivent être croissants, afin que chaque frontière soit lue dans les limites du fichier
+            for (int i = 0; valid && i < stationsCount; i++) {
+                valid = buffer.getInt(offsetsPosition + Integer.BYTES * i)
+                        <= buffer.getInt(offsetsPosition + Integer.BYTES * (i + 1));
+            }
+        }
+        if (!valid) throw new IOException("Fichier de profil invalide : " + path);
+
+        return Optional.of(new Profile(timeTable, date, arrStationId,
+                new MappedStationFronts(buffer, stationsCount, offsetsPosition, tuplesPosition)));
+    }
+
+    /**
+     * Méthode qui stocke le profil donné, s'il ne l'a pas déjà été. Le profil doit correspondre à l'horaire
+     * de la version du stock
+     * @param profile profil à stocker
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public void store(Profile profile) throws IOException {
+        Path path = pathFor(profile.date(), profile.arrStationId());
+        if (Files.isRegularFile(path)) return;
+
+        // Taille du fichier, et index du premier tuple de chaque gare
+        int stationsCount = profile.stationFront().size();
+        int[] offsets = new int[stationsCount + 1];
+        for (int stationId = 0; stationId < stationsCount; stationId++)
+            offsets[stationId + 1] = offsets[stationId] + profile.forStation(stationId).size();
+        int tuplesCount = offsets[stationsCount];
+
+        ByteBuffer buffer = ByteBuffer.allocate(
+                HEADER_BYTES + Integer.BYTES * (stationsCount + 1) + Long.BYTES * tuplesCount);
+        buffer.putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putLong(profile.date().toEpochDay())
+                .putInt(profile.arrStationId())
+                .putInt(stationsCount)
+                .putInt(tuplesCount);
+        for (int offset : offsets) buffer.putInt(offset);
+        for (int stationId = 0; stationId < stationsCount; stationId++)
+            profile.forStation(stationId).forEach(buffer::putLong);
+        buffer.flip();
+
+        // Écriture sous un nom temporaire, puis renommage atomique
+        Files.createDirectories(path.getParent());
+        Path temporary = Files.createTempFile(path.getParent(), profile.arrStationId() + "-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(true);
+            }
+            move(temporary, path);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Méthode qui déplace dans ce stock les profils écrits, pour la même version de l'horaire, dans le stock
+     * du répertoire donné (p. ex. par une tâche de précalcul distincte), à l'exception de ceux que ce stock
+     * contient déjà, qui sont simplement supprimés. Les fichiers temporaires laissés par une écriture
+     * interrompue sont ignorés. Si les deux répertoires sont sur le même système de fichiers, chaque profil
+     * est déplacé de manière atomique
+     * @param sourceDirectory répertoire de l'autre stock
+     * @return le nombre de profils déplacés dans ce stock
+     * @throws IOException en cas d'erreur de lecture ou de déplacement
+     */
+    public int mergeFrom(Path sourceDirectory) throws IOException {
+        Path sourceVersionDirectory = sourceDirectory.resolve(timeTableVersion);
+        if (!Files.isDirectory(sourceVersionDirectory)) return 0;
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(sourceVersionDirectory)) {
+            files = paths.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().endsWith(EXTENSION))
+                    .toList();
+        }
+
+        int moved = 0;
+        Path versionDirectory = directory.resolve(timeTableVersion);
+        for (Path file : files) {
+            Path path = versionDirectory.resolve(sourceVersionDirectory.relativize(file).toString());
+            if (Files.isRegularFile(path)) {
+                Files.delete(file);
+            } else {
+                Files.createDirectories(path.getParent());
+                move(file, path);
+                moved += 1;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Fonction qui déplace le fichier donné, de manière atomique si possible
+     * @param source fichier à déplacer
+     * @param target nouveau chemin du fichier
+     * @throws IOException en cas d'erreur de déplacement
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Méthode qui retourne le profil de la date et de la gare d'arrivée données, lu dans le stock s'il y est,
+     * sinon calculé au moyen du routeur donné, stocké, puis relu depuis le stock
+     * @param router routeur dont l'horaire est celui de la version du stock
+     * @param date date du profil
+     * @param arrStationId gare d'arrivée du profil
+     * @return le profil, projeté en mémoire depuis le stock
+     * @throws IOException en cas d'erreur de lecture ou d'écriture
+     */
+    public Profile loadOrCompute(Router router, LocalDate date, int arrStationId) throws IOException {
+        Optional<Profile> stored = load(router.timetable(), date, arrStationId);
+        if (stored.isPresent()) return stored.get();
+
+        store(router.profile(date, arrStationId));
+        return load(router.timetable(), date, arrStationId).orElseThrow();
+    }
+}
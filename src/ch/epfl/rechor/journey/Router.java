@@ -1,14 +1,25 @@
 package ch.epfl.rechor.journey;
 
 import ch.epfl.rechor.PackedRange;
+import ch.epfl.rechor.Preconditions;
+import ch.epfl.rechor.timetable.CachedTimeTable;
 import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.StopStations;
 import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.Transfers;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
 
 /**
  * Classe qui représente un routeur qui est un objet
@@ -20,6 +31,25 @@ import java.util.Objects;
  */
 public record Router(TimeTable timetable) {
 
+    // Valeur indiquant qu'aucune gare de départ n'est connue (calcul d'un profil complet)
+    private static final int NO_STATION = -1;
+
+    // Borne (exclue) des heures représentables dans des critères empaquetés
+    private static final int MAX_MINS = 2880;
+
+    // Demande d'annulation d'un calcul qui ne peut pas être annulé
+    private static final BooleanSupplier NEVER_CANCELLED = () -> false;
+
+    // Masque des index de liaisons auxquels la demande d'annulation est consultée (toutes les 4096 liaisons),
+    // afin que sa consultation ne coûte rien par rapport au parcours des liaisons
+    private static final int CANCELLATION_CHECK_MASK = (1 << 12) - 1;
+
+    // Réserve des espaces de travail, empruntés par chaque calcul de profil puis rendus à sa fin, et réutilisés
+    // d'un calcul à l'autre afin de ne pas réallouer les tables de frontières (dimensionnées selon l'horaire)
+    // à chaque requête. Au plus un espace libre par processeur est conservé, soit autant que de calculs
+    // pouvant réellement avoir lieu en même temps, quel que soit le nombre de fils d'exécution (p. ex. virtuels)
+    static final RoutingWorkspacePool WORKSPACES =
+            new RoutingWorkspacePool(Runtime.getRuntime().availableProcessors());
 
     /**
      * Méthode qui retourne le profil de tous les voyages optimaux
@@ -30,89 +60,338 @@ public record Router(TimeTable timetable) {
      * @return le profil des voyages optimaux
      */
     public Profile profile(LocalDate date, int arrStationId) {
+        return computeProfile(date, arrStationId, Integer.MIN_VALUE, Integer.MAX_VALUE, NO_STATION, NEVER_CANCELLED);
+    }
+
+    /**
+     * Méthode qui retourne le profil de tous les voyages optimaux permettant de se rendre de n'importe quelle
+     * gare du réseau à une gare d'arrivée donnée, un jour donné, en consultant régulièrement pendant le calcul
+     * la demande d'annulation donnée (p. ex. lorsque la requête de l'utilisateur a changé entre-temps) :
+     * dès qu'elle est vraie, le calcul est abandonné
+     * @param date la date du voyage
+     * @param arrStationId l'identifiant de la gare d'arrivée
+     * @param cancelled la demande d'annulation, consultée depuis le fil d'exécution du calcul
+     * @return le profil des voyages optimaux
+     * @throws CancellationException si le calcul a été annulé
+     */
+    public Profile profile(LocalDate date, int arrStationId, BooleanSupplier cancelled) {
+        return computeProfile(date, arrStationId, Integer.MIN_VALUE, Integer.MAX_VALUE, NO_STATION,
+                Objects.requireNonNull(cancelled));
+    }
+
+    /**
+     * Méthode qui retourne le profil des voyages optimaux permettant de se rendre à une gare d'arrivée donnée,
+     * un jour donné, en ne considérant que les voyages qui partent (marche initiale comprise) au plus tôt
+     * à l'heure donnée, et qui arrivent à destination au plus tard à l'heure donnée.
+     * Les frontières obtenues sont celles du profil complet, privées des tuples hors de cette fenêtre.
+     * Seules les liaisons de la fenêtre sont parcourues, ce qui est bien plus rapide pour une requête
+     * portant sur quelques heures.
+     * @param date la date du voyage
+     * @param arrStationId l'identifiant de la gare d'arrivée
+     * @param minDepMins heure de départ minimale, en minutes après minuit
+     * @param maxArrMins heure d'arrivée maximale à destination, en minutes après minuit
+     * @return le profil des voyages optimaux dans la fenêtre donnée
+     * @throws IllegalArgumentException si l'heure de départ minimale est après l'heure d'arrivée maximale
+     */
+    public Profile profile(LocalDate date, int arrStationId, int minDepMins, int maxArrMins) {
+        Preconditions.checkArgument(minDepMins <= maxArrMins);
+        return computeProfile(date, arrStationId, minDepMins, maxArrMins, NO_STATION, NEVER_CANCELLED);
+    }
+
+    /**
+     * Méthode qui retourne un profil permettant d'extraire les voyages optimaux entre deux gares données,
+     * un jour donné. Seule la frontière de la gare de départ est garantie identique à celle du profil complet :
+     * les liaisons qui ne peuvent plus l'améliorer, car dominées par un tuple déjà présent dans
+     * cette frontière, sont ignorées, ce qui rend le calcul plus rapide. Les voyages obtenus avec
+     * JourneyExtractor.journeys pour la gare de départ sont les mêmes qu'avec le profil complet.
+     * @param date la date du voyage
+     * @param depStationId l'identifiant de la gare de départ
+     * @param arrStationId l'identifiant de la gare d'arrivée
+     * @return le profil, dont seule la frontière de la gare de départ est complète
+     * @throws IndexOutOfBoundsException si l'identifiant de la gare de départ est invalide
+     */
+    public Profile oneToOneProfile(LocalDate date, int depStationId, int arrStationId) {
+        Objects.checkIndex(depStationId, timetable.stations().size());
+        return computeProfile(date, arrStationId, Integer.MIN_VALUE, Integer.MAX_VALUE, depStationId,
+                NEVER_CANCELLED);
+    }
+
+    /**
+     * Méthode qui retourne le profil de tous les voyages optimaux permettant de se rendre de n'importe quelle
+     * gare du réseau à une gare d'arrivée donnée, un jour donné (comme profile), accompagné de la durée de
+     * son calcul et du nombre maximal de frontières de courses vivantes simultanément pendant celui-ci
+     * @param date la date du voyage
+     * @param arrStationId l'identifiant de la gare d'arrivée
+     * @return le profil des voyages optimaux, avec les mesures de son calcul
+     */
+    public TimedProfile timedProfile(LocalDate date, int arrStationId) {
+        long startNanos = System.nanoTime();
+        RoutingWorkspace workspace = WORKSPACES.acquire();
+        try {
+            Profile profile = computeProfile(date, arrStationId, Integer.MIN_VALUE, Integer.MAX_VALUE, NO_STATION,
+                    NEVER_CANCELLED, workspace);
+            return new TimedProfile(arrStationId, profile, Duration.ofNanos(System.nanoTime() - startNanos),
+                    workspace.peakLiveTripFronts());
+        } finally {
+            WORKSPACES.release(workspace);
+        }
+    }
+
+    /**
+     * Méthode qui retourne le nombre maximal de frontières de courses vivantes simultanément atteint
+     * par l'un des calculs de profils effectués jusqu'ici, quelle que soit la méthode qui l'a lancé
+     * (0 si aucun calcul n'a eu lieu). La frontière d'une course est libérée dès que sa première liaison
+     * a été parcourue, ce nombre détermine donc la mémoire nécessaire au plus gros des calculs
+     * @return le nombre maximal de frontières de courses vivantes lors d'un calcul
+     */
+    public static int peakLiveTripFronts() {
+        return WORKSPACES.peakLiveTripFronts();
+    }
+
+    /**
+     * Fonction qui retourne une estimation du nombre d'octets occupés par le plus grand des espaces de travail
+     * utilisés jusqu'ici, soit la mémoire nécessaire à un calcul de profil en plus du profil lui-même
+     * @return le nombre d'octets (approximatif) occupés par un espace de travail
+     */
+    static long workspaceBytes() {
+        return WORKSPACES.peakWorkspaceBytes();
+    }
+
+    /**
+     * Méthode qui calcule en parallèle, au moyen de l'exécuteur donné (p. ex. un ForkJoinPool ou un
+     * exécuteur à fils virtuels), les profils de toutes les gares d'arrivée données, un jour donné.
+     * Les données du jour (liaisons et courses) ne sont décodées qu'une fois, puis partagées par
+     * tous les calculs au travers d'un horaire mis en cache, sûr en cas d'accès concurrents.
+     * @param date la date des voyages
+     * @param arrStationIds les identifiants des gares d'arrivée
+     * @param executor l'exécuteur sur lequel les profils sont calculés
+     * @return les profils calculés, avec leur durée de calcul, dans l'ordre des gares données
+     * @throws IndexOutOfBoundsException si l'un des identifiants de gare est invalide
+     * @throws InterruptedException si le fil d'exécution appelant est interrompu pendant l'attente
+     */
+    public List<TimedProfile> profiles(LocalDate date, Collection<Integer> arrStationIds, ExecutorService executor)
+            throws InterruptedException {
+        Objects.requireNonNull(date);
+        Objects.requireNonNull(executor);
+
+        // On vérifie toutes les gares avant de lancer le moindre calcul
+        int stationsCount = timetable.stations().size();
+        for (int arrStationId : arrStationIds) Objects.checkIndex(arrStationId, stationsCount);
+
+        // Les données du jour sont chargées une seule fois, avant de lancer les calculs,
+        // puis partagées par tous les fils d'exécution
+        TimeTable sharedTimeTable = new CachedTimeTable(timetable);
+        sharedTimeTable.connectionsFor(date);
+        sharedTimeTable.tripsFor(date);
+        Router sharedRouter = new Router(sharedTimeTable);
+
+        List<Callable<TimedProfile>> tasks = new ArrayList<>(arrStationIds.size());
+        for (int arrStationId : arrStationIds) {
+            tasks.add(() -> sharedRouter.timedProfile(date, arrStationId));
+        }
+
+        List<TimedProfile> timedProfiles = new ArrayList<>(tasks.size());
+        for (Future<TimedProfile> future : executor.invokeAll(tasks)) {
+            try {
+                timedProfiles.add(future.get());
+            } catch (ExecutionException e) {
+                // On relance telle quelle l'exception levée par le calcul du profil
+                if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+                if (e.getCause() instanceof Error error) throw error;
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return List.copyOf(timedProfiles);
+    }
+
+    /**
+     * Fonction qui calcule le profil à l'aide de l'algorithme CSA (voir la méthode suivante), dans un espace
+     * de travail emprunté à la réserve, et rendu à celle-ci dès la fin du calcul, même s'il a échoué
+     * @param date la date du voyage
+     * @param arrStationId l'identifiant de la gare d'arrivée
+     * @param minDepMins heure de départ minimale d'une liaison
+     * @param maxArrMins heure d'arrivée maximale d'une liaison
+     * @param depStationId la gare de départ dont la frontière sert à élaguer, ou NO_STATION
+     * @param cancelled la demande d'annulation, consultée toutes les CANCELLATION_CHECK_MASK + 1 liaisons
+     * @return le profil des voyages optimaux
+     * @throws CancellationException si le calcul a été annulé
+     */
+    private Profile computeProfile(LocalDate date, int arrStationId, int minDepMins, int maxArrMins,
+                                   int depStationId, BooleanSupplier cancelled) {
+        RoutingWorkspace workspace = WORKSPACES.acquire();
+        try {
+            return computeProfile(date, arrStationId, minDepMins, maxArrMins, depStationId, cancelled, workspace);
+        } finally {
+            WORKSPACES.release(workspace);
+        }
+    }
+
+    /**
+     * Fonction qui calcule le profil à l'aide de l'algorithme CSA, en ne parcourant que les liaisons
+     * qui partent au plus tôt à minDepMins et arrivent au plus tard à maxArrMins
+     * @param date la date du voyage
+     * @param arrStationId l'identifiant de la gare d'arrivée
+     * @param minDepMins heure de départ minimale d'une liaison
+     * @param maxArrMins heure d'arrivée maximale d'une liaison
+     * @param depStationId la gare de départ dont la frontière sert à élaguer, ou NO_STATION
+     * @param cancelled la demande d'annulation, consultée toutes les CANCELLATION_CHECK_MASK + 1 liaisons
+     * @param workspace l'espace de travail du calcul, réinitialisé par celui-ci et dont l'appelant
+     *                  ne doit pas se servir pendant le calcul
+     * @return le profil des voyages optimaux
+     * @throws CancellationException si le calcul a été annulé
+     */
+    private Profile computeProfile(LocalDate date, int arrStationId, int minDepMins, int maxArrMins,
+                                   int depStationId, BooleanSupplier cancelled, RoutingWorkspace workspace) {
         // La date ne doit pas être nulle
         Objects.requireNonNull(date);
 
-        // On crée un profil vide à l'aide du Builder
-        Profile.Builder p = new Profile.Builder(timetable, date, arrStationId);
+        // On crée un profil vide à l'aide du Builder, dans l'espace de travail du calcul
+        Profile.Builder p = new Profile.Builder(timetable, date, arrStationId, workspace);
 
-        int[] minutesBetweenForEveryStation  = calculateMinuteBetween(arrStationId);
+        // Durées de marche jusqu'à la gare d'arrivée : seuls les changements arrivant à celle-ci sont parcourus,
+        // les gares depuis lesquelles le trajet n'est pas faisable à pied reçoivent -1
+        int[] minutesBetweenForEveryStation  = workspace.walkMinutes();
+        timetable.transfers().fillMinutesTo(arrStationId, minutesBetweenForEveryStation);
+
+        // Plus courte marche possible jusqu'à la gare d'arrivée, qui borne inférieurement l'heure d'arrivée
+        // d'un voyage par rapport à celle de sa dernière liaison (utile à l'élagage d'une requête d'une gare à une autre)
+        int minWalkToArrStation = Integer.MAX_VALUE;
+        if (depStationId != NO_STATION) {
+            for (int minutes : minutesBetweenForEveryStation) {
+                if (minutes != -1) minWalkToArrStation = Math.min(minWalkToArrStation, minutes);
+            }
+        }
 
         // Algorithme CSA
 
         Connections connections = timetable.connectionsFor(date);
+        Transfers transfers = timetable.transfers();
+
+        // Table des gares des arrêts, qui évite d'appeler stationId (et les appels virtuels
+        // qu'il implique) deux fois par liaison
+        StopStations stopStations = timetable.stopStations();
+
+        // 'f' est la frontière temporaire de la liaison courante. Elle appartient à l'espace de travail
+        // et est vidée au début de chaque itération, afin que la boucle n'alloue rien par liaison
+        ParetoFront.Builder f = workspace.scratchFront();
+
+        // Un calcul annulé avant même d'avoir commencé (p. ex. en attente dans un exécuteur) ne parcourt rien
+        if (cancelled.getAsBoolean()) throw new CancellationException("Calcul du profil annulé");
 
-        // On parcourt la totalité des liaisons de l'horaire, dans l'ordre décroissant
+        // On parcourt les liaisons de l'horaire dans l'ordre décroissant
         // comme "connectionsFor" retourne déjà les connections dans l'ordre décroissant,
         // il suffit de parcourir dans l'ordre croissant.
-        for (int i = 0, n = connections.size(); i < n; i++) {
-            // 'f' est la frontière temporaire pour cette liaison 'l'
-            ParetoFront.Builder f = new ParetoFront.Builder();
+        // Une liaison qui part après maxArrMins ne peut pas arriver à temps, on commence donc
+        // directement à la première liaison qui part au plus tard à cette heure
+        for (int i = firstConnectionDepartingBefore(connections, maxArrMins), n = connections.size(); i < n; i++) {
+
+            // ANNULATION : l'espace de travail étant réinitialisé au début de chaque calcul,
+            // le calcul peut être abandonné à n'importe quelle liaison
+            if ((i & CANCELLATION_CHECK_MASK) == 0 && cancelled.getAsBoolean())
+                throw new CancellationException("Calcul du profil annulé");
 
             // Extraction des informations de notre liaison actuelle
-            int currentConnDepStopID = connections.depStopId(i);
-            int currentConnArrStopID = connections.arrStopId(i);
             int currentConnDepMins   = connections.depMins(i);
             int currentConnArrMins   = connections.arrMins(i);
+
+            // Toutes les liaisons suivantes partent avant minDepMins, on peut donc s'arrêter
+            if (currentConnDepMins < minDepMins) break;
+
+            // Une liaison qui arrive trop tard ne peut faire partie d'aucun voyage de la fenêtre
+            if (currentConnArrMins > maxArrMins) continue;
+
+            // ÉLAGAGE (requête d'une gare à une autre) :
+            // Tout voyage empruntant cette liaison part de la gare de départ au plus tard à son heure de départ,
+            // arrive au plus tôt à son heure d'arrivée plus la plus courte marche finale, et a au moins 0 changement.
+            // Si la frontière de la gare de départ contient déjà un tuple qui domine ces critères,
+            // la liaison ne peut plus l'améliorer, et on l'ignore entièrement
+            if (depStationId != NO_STATION) {
+                ParetoFront.Builder originFront = p.forStation(depStationId);
+                int earliestArrMins = currentConnArrMins + minWalkToArrStation;
+                if (originFront != null && earliestArrMins < MAX_MINS && originFront.dominatesOrIsEqual(
+                        PackedCriteria.withDepMins(PackedCriteria.pack(earliestArrMins, 0, 0), currentConnDepMins))) {
+                    continue;
+                }
+            }
+
+            f.clear();
+
+            int currentConnDepStopID = connections.depStopId(i);
+            int currentConnArrStopID = connections.arrStopId(i);
             int currentConnTripId    = connections.tripId(i);
             int currentConnTripPos   = connections.tripPos(i);
 
-            int currentConnArrStationId = timetable.stationId(currentConnArrStopID);
-            int currentConnDepStationId = timetable.stationId(currentConnDepStopID);
+            int currentConnArrStationId = stopStations.stationOf(currentConnArrStopID);
+            int currentConnDepStationId = stopStations.stationOf(currentConnDepStopID);
 
             // Option 1
-            checkOption1(f, minutesBetweenForEveryStation, currentConnArrStationId, currentConnArrMins, i);
+            checkOption1(f, minutesBetweenForEveryStation, currentConnArrStationId, currentConnArrMins, maxArrMins, i);
 
             // Option 2 : continuer avec la liaison suivante
             checkOption2(p, f, currentConnTripId);
 
+            // Les liaisons d'une course sont parcourues par position décroissante (ce dont dépend déjà l'option 2),
+            // la frontière d'une course n'est donc plus lue une fois sa première liaison atteinte :
+            // on la libère aussitôt, afin que son espace soit réutilisé par les frontières suivantes.
+            // INVARIANT : cela suppose que connectionsFor ordonne les liaisons d'une même course partant
+            // à la même minute (p. ex. après une liaison de durée nulle) par position décroissante.
+            // Sinon, la liaison de position 0 serait parcourue avant les suivantes, et la frontière
+            // qu'elles remplissent ensuite ne serait plus jamais lue
+            boolean isFirstConnectionOfTrip = currentConnTripPos == 0;
+            if (isFirstConnectionOfTrip) p.releaseForTrip(currentConnTripId);
+
             // Option 3) Changer de véhicule à arr(l) ---------------
-            checkOption3(p, f, currentConnArrStopID, currentConnArrMins, i);
+            checkOption3(p, f, currentConnArrStationId, currentConnArrMins, i);
 
             // On sort de la boucle si la frontière est vide
             if (f.isEmpty()) continue;
 
             // ----------------- Dernière partie -------------------
 
-            // Mise à jour de la frontière de la course
-            if (p.forTrip(currentConnTripId) != null) {
-                p.forTrip(currentConnTripId).addAll(f);
-            } else {
-                p.setForTrip(currentConnTripId, f);
+            // Mise à jour de la frontière de la course, inutile si c'est sa première liaison
+            // Comme 'f' est réutilisée à la prochaine itération, on stocke une copie
+            // (dans l'arène du profil) lorsque la course n'a pas encore de frontière
+            if (!isFirstConnectionOfTrip) {
+                ParetoFront.Builder tripFront = p.forTrip(currentConnTripId);
+                if (tripFront != null) {
+                    tripFront.addAll(f);
+                } else {
+                    p.setForTrip(currentConnTripId, p.newFront().addAll(f));
+                }
             }
 
             // OPTIMISATION :
             // Si la frontière de la gare de départ domine entièrement f avec l'heure de départ de la liaison actuelle,
             // alors on peut skip la dernière partie, car il n'y aura rien d'utile dans f aux gares de départ
-            if (p.forStation(currentConnDepStationId) != null) {
-                if (p.forStation(currentConnDepStationId).fullyDominates(f, currentConnDepMins)) {
-                    continue;
-                }
+            ParetoFront.Builder depStationFront = p.forStation(currentConnDepStationId);
+            if (depStationFront != null && depStationFront.fullyDominates(f, currentConnDepMins)) {
+                continue;
             }
 
             // Mise à jour des frontières des gares
             // Récupération des changements arrivant au départ de notre liaison
-            int depStationIdForTransfer = timetable.stationId(currentConnDepStopID);
-            int intervalOfTransfersArrivingToDep = timetable.transfers().arrivingAt(depStationIdForTransfer);
+            int intervalOfTransfersArrivingToDep = transfers.arrivingAt(currentConnDepStationId);
             int transferStart = PackedRange.startInclusive(intervalOfTransfersArrivingToDep);
             int transferEnd = PackedRange.endExclusive(intervalOfTransfersArrivingToDep);
 
             for (int transferId = transferStart; transferId < transferEnd; transferId++) {
-                int transferDepStationID = timetable.transfers().depStationId(transferId);
-                int transferDuration = timetable.transfers().minutes(transferId);
+                int transferDepStationID = transfers.depStationId(transferId);
+                int transferDuration = transfers.minutes(transferId);
 
                 // C'est l'heure de départ du petit trajet d'avant, pour rejoindre la gare actuelle
                 int d = currentConnDepMins - transferDuration;
 
                 // Si c'est le premier cas où l'on a affaire à cette gare,
                 // ce sera null et il faut créer un builder de frontière
-                if (p.forStation(transferDepStationID) == null) {
-                    p.setForStation(transferDepStationID , new ParetoFront.Builder());
+                ParetoFront.Builder stationFront = p.forStation(transferDepStationID);
+                if (stationFront == null) {
+                    stationFront = p.newFront();
+                    p.setForStation(transferDepStationID, stationFront);
                 }
 
-                 // Pour tous les tuples de la frontière
-                int connId = i;
-                f.forEach(tuple -> {
+                // Pour tous les tuples de la frontière, parcourus par index pour éviter une lambda
+                for (int k = 0, size = f.size(); k < size; k++) {
+                    long tuple = f.get(k);
 
                     // Extraction des données du tuple
                     int arrMins = PackedCriteria.arrMins(tuple);
@@ -125,46 +404,51 @@ public record Router(TimeTable timetable) {
                     // Le payload contient la liaison l dans les 24 bits de gauche,
                     // et le nombre d'arrêts intermédiaires dans les 8 bits de droite.
 
-                    int payload = connId << 8 | intermediateStopsNumber;
+                    int payload = i << 8 | intermediateStopsNumber;
 
                     long tupleToAdd = PackedCriteria.pack(arrMins, changes, payload);
                     tupleToAdd = PackedCriteria.withDepMins(tupleToAdd, d);
 
-                    p.forStation(transferDepStationID).add(tupleToAdd);
-                });
+                    stationFront.add(tupleToAdd);
+                }
             }
 
         }
 
+        // Les voyages dont la marche initiale commence avant minDepMins sont hors de la fenêtre,
+        // on les retire des frontières des gares (aucun voyage de la fenêtre n'en dépend)
+        if (minDepMins != Integer.MIN_VALUE) {
+            for (int stationId = 0, n = timetable.stations().size(); stationId < n; stationId++) {
+                ParetoFront.Builder stationFront = p.forStation(stationId);
+                if (stationFront != null) stationFront.removeDepartingBefore(minDepMins);
+            }
+        }
+
         return p.build();
     }
 
 
     /**
-     * Fonction qui calcule les minutes de changement entre toutes les sations
-     * dans un tableau
-     * @param arrStationId l'id de la station à partir duquel on part
-     * @return un tableau qui contient les minutes
+     * Fonction qui retourne, par recherche dichotomique, l'index de la première liaison
+     * partant au plus tard à l'heure donnée, les liaisons étant triées par heure de départ décroissante
+     * @param connections les liaisons du jour
+     * @param mins heure en minutes après minuit
+     * @return l'index de cette liaison, ou le nombre de liaisons si aucune ne part assez tôt
      */
-    private int[] calculateMinuteBetween(int arrStationId) {
-        int[] minutesBetweenForEveryStation  = new int[timetable.stations().size()];
-
-        for (int i = 0; i < timetable.stations().size(); ++i) {
-            int currentMinutesBetween;
-
-            try {
-                // On essaie d'obtenir le temps de transfer pour chaque gare
-                currentMinutesBetween = timetable.transfers().minutesBetween(i, arrStationId);
-            } catch (NoSuchElementException e) {
-                // On retourne -1 si le trajet n'est pas faisable à pied
-                currentMinutesBetween = -1;
+    private static int firstConnectionDepartingBefore(Connections connections, int mins) {
+        int low = 0;
+        int high = connections.size();
+
+        // Invariant : les liaisons avant low partent après mins, celles à partir de high au plus tard à mins
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (connections.depMins(middle) > mins) {
+                low = middle + 1;
+            } else {
+                high = middle;
             }
-
-            // Et on le met dans notre tableau
-            minutesBetweenForEveryStation[i] = currentMinutesBetween;
         }
-
-        return minutesBetweenForEveryStation;
+        return low;
     }
 
     /**
@@ -173,6 +457,7 @@ public record Router(TimeTable timetable) {
      * @param minutesBetweenForEveryStation tableau qui contient les minutes entre les stations
      * @param currentConnArrStationId l'id de la station d'arrivée
      * @param currentConnArrMins minutes minimum de la connection
+     * @param maxArrMins heure d'arrivée maximale à destination
      * @param i index courant
      */
     private void checkOption1(
@@ -180,6 +465,7 @@ public record Router(TimeTable timetable) {
             int[] minutesBetweenForEveryStation,
             int currentConnArrStationId,
             int currentConnArrMins,
+            int maxArrMins,
             int i // l'id de la connection courante
     ) {
         // ------------------ Option 1) Marcher depuis arr(l) vers la destination finale ---------------
@@ -189,7 +475,7 @@ public record Router(TimeTable timetable) {
         // changement existe entre les deux gares
         int walkDuration = minutesBetweenForEveryStation[currentConnArrStationId];
 
-        if (walkDuration != -1) {
+        if (walkDuration != -1 && currentConnArrMins + walkDuration <= maxArrMins) {
             long t = PackedCriteria.pack(currentConnArrMins + walkDuration, 0, i);
             t = PackedCriteria.withDepMins(t, currentConnArrMins);
             f.add(t);
@@ -219,38 +505,35 @@ public record Router(TimeTable timetable) {
      * entre les routes
      * @param p un bâtisseur de profil
      * @param f un bâtisseur de frontière
-     * @param currentConnArrStopID l'id de l'arrêt courant
+     * @param currentConnArrStationId l'id de la gare d'arrivée de la liaison courante
      * @param currentConnArrMins minutes minimum de la connection
+     * @param connId l'id de la connection courante
      */
     private void checkOption3(
             Profile.Builder p,
             ParetoFront.Builder f,
-            int currentConnArrStopID,
+            int currentConnArrStationId,
             int currentConnArrMins,
             int connId
     ) {
 
-        // liste qui va contenir les tuples à ajouter
-        List<Long> tuples = new ArrayList<>();
-
-        // On vérifie que ce n'est pas null, sinon null.forEach lèvera une exception
-        if (p.forStation(timetable.stationId(currentConnArrStopID)) != null) { // SEULEMENT si un builder existe pour cette gare
-
-            p.forStation(timetable.stationId(currentConnArrStopID)).forEach(tuples::add);
-
-            tuples.stream()
-                    .filter(criteria ->
-                            PackedCriteria.hasDepMins(criteria) // On garde seulement ceux qui n'ont pas
-                                    && PackedCriteria.depMins(criteria) >= currentConnArrMins
-                    ) // d'anomalie temporelle
-                    .forEach(criteria -> {
-                        int arrMin    = PackedCriteria.arrMins(criteria);
-                        int changes   = PackedCriteria.changes(criteria);
-                        long t        = PackedCriteria.pack(arrMin, changes + 1, connId);
-                        t             = PackedCriteria.withDepMins(t, currentConnArrMins);
-                        f.add(t);
-                    }
-                    );
+        ParetoFront.Builder arrStationFront = p.forStation(currentConnArrStationId);
+
+        // On vérifie que ce n'est pas null, SEULEMENT si un builder existe pour cette gare
+        if (arrStationFront == null) return;
+
+        // On parcourt directement les tuples de la gare, sans les copier ni les emballer
+        for (int k = 0, size = arrStationFront.size(); k < size; k++) {
+            long criteria = arrStationFront.get(k);
+
+            // On garde seulement ceux qui n'ont pas d'anomalie temporelle
+            if (PackedCriteria.hasDepMins(criteria) && PackedCriteria.depMins(criteria) >= currentConnArrMins) {
+                int arrMin    = PackedCriteria.arrMins(criteria);
+                int changes   = PackedCriteria.changes(criteria);
+                long t        = PackedCriteria.pack(arrMin, changes + 1, connId);
+                t             = PackedCriteria.withDepMins(t, currentConnArrMins);
+                f.add(t);
+            }
         }
     }
 
@@ -0,0 +1,189 @@
+package ch.epfl.rechor.journey;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Espace de travail d'un calcul de profil, réutilisable d'une requête à l'autre (voir RoutingWorkspacePool).
+ * Il contient les tables des bâtisseurs de frontières des gares et des courses, l'arène qui stocke leurs tuples,
+ * la frontière temporaire de la liaison courante et la table des durées de marche jusqu'à la destination.
+ * Les tables ne sont jamais remplies à nouveau : chaque entrée est marquée du numéro de génération de la requête
+ * qui l'a écrite, et une entrée d'une génération antérieure est considérée comme vide. Les tables ne sont
+ * réallouées que lorsqu'un horaire plus grand que les précédents l'exige.
+ * Un espace de travail n'est pas sûr en cas d'accès concurrents, et les bâtisseurs qu'il fournit ne sont
+ * valides que jusqu'à la réinitialisation suivante.
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+final class RoutingWorkspace {
+
+    // Numéro de génération de la requête courante, 0 n'étant jamais utilisé pour qu'une table neuve soit vide
+    private int generation = 0;
+
+    // Nombre de gares et de courses de la requête courante
+    private int stationsCount = 0;
+    private int tripsCount = 0;
+
+    // Bâtisseurs des frontières des gares et des courses, et génération dans laquelle ils ont été associés
+    private ParetoFront.Builder[] stationFronts = new ParetoFront.Builder[0];
+    private int[] stationGenerations = new int[0];
+    private ParetoFront.Builder[] tripFronts = new ParetoFront.Builder[0];
+    private int[] tripGenerations = new int[0];
+
+    // Nombre de frontières de courses associées et pas encore libérées, et son maximum depuis la réinitialisation
+    private int liveTripFronts = 0;
+    private int peakLiveTripFronts = 0;
+
+    // Arène des tuples des frontières, vidée (sans être réallouée) à chaque réinitialisation
+    private final ParetoFront.Slab slab = new ParetoFront.Slab();
+
+    // Frontière temporaire de la liaison courante
+    private final ParetoFront.Builder scratchFront = new ParetoFront.Builder();
+
+    // Durées de marche jusqu'à la gare d'arrivée, par gare de départ
+    private int[] walkMinutes = new int[0];
+
+    /**
+     * Fonction qui prépare l'espace de travail pour une nouvelle requête, en vidant (logiquement)
+     * toutes ses tables. Les bâtisseurs fournis auparavant ne doivent plus être utilisés
+     * @param stationsCount nombre de gares de l'horaire
+     * @param tripsCount nombre de courses du jour
+     */
+    void reset(int stationsCount, int tripsCount) {
+        this.stationsCount = stationsCount;
+        this.tripsCount = tripsCount;
+
+        if (stationsCount > stationFronts.length) {
+            stationFronts = new ParetoFront.Builder[stationsCount];
+            stationGenerations = new int[stationsCount];
+        }
+        if (stationsCount != walkMinutes.length) walkMinutes = new int[stationsCount];
+        if (tripsCount > tripFronts.length) {
+            tripFronts = new ParetoFront.Builder[tripsCount];
+            tripGenerations = new int[tripsCount];
+        }
+
+        // Lorsque le numéro de génération fait le tour, les marques sont effacées une fois pour toutes
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stationGenerations, 0);
+            Arrays.fill(tripGenerations, 0);
+            generation = 0;
+        }
+        generation += 1;
+
+        slab.reset();
+        scratchFront.clear();
+        liveTripFronts = 0;
+        peakLiveTripFronts = 0;
+    }
+
+    /**
+     * Fonction qui retourne le bâtisseur de la frontière de la gare d'index donné,
+     * ou null si aucun ne lui a été associé depuis la dernière réinitialisation
+     * @param stationId index de la gare
+     * @return le bâtisseur de la frontière de la gare, ou null
+     * @throws IndexOutOfBoundsException si l'index est invalide
+     */
+    ParetoFront.Builder stationFront(int stationId) {
+        Objects.checkIndex(stationId, stationsCount);
+        return stationGenerations[stationId] == generation ? stationFronts[stationId] : null;
+    }
+
+    /**
+     * Fonction qui associe le bâtisseur donné à la gare d'index donné
+     * @param stationId index de la gare
+     * @param builder bâtisseur de frontière
+     * @throws IndexOutOfBoundsException si l'index est invalide
+     */
+    void setStationFront(int stationId, ParetoFront.Builder builder) {
+        Objects.checkIndex(stationId, stationsCount);
+        stationFronts[stationId] = builder;
+        stationGenerations[stationId] = generation;
+    }
+
+    /**
+     * Fonction qui retourne le bâtisseur de la frontière de la course d'index donné,
+     * ou null si aucun ne lui a été associé depuis la dernière réinitialisation
+     * @param tripId index de la course
+     * @return le bâtisseur de la frontière de la course, ou null
+     * @throws IndexOutOfBoundsException si l'index est invalide
+     */
+    ParetoFront.Builder tripFront(int tripId) {
+        Objects.checkIndex(tripId, tripsCount);
+        return tripGenerations[tripId] == generation ? tripFronts[tripId] : null;
+    }
+
+    /**
+     * Fonction qui associe le bâtisseur donné à la course d'index donné
+     * @param tripId index de la course
+     * @param builder bâtisseur de frontière
+     * @throws IndexOutOfBoundsException si l'index est invalide
+     */
+    void setTripFront(int tripId, ParetoFront.Builder builder) {
+        if (tripFront(tripId) != null) liveTripFronts -= 1;
+        if (builder != null) liveTripFronts += 1;
+        peakLiveTripFronts = Math.max(peakLiveTripFronts, liveTripFronts);
+        tripFronts[tripId] = builder;
+        tripGenerations[tripId] = generation;
+    }
+
+    /**
+     * Fonction qui libère le bâtisseur de la frontière de la course d'index donné, s'il existe : il n'est plus
+     * associé à la course et, s'il a été fourni par newFront, son espace est réutilisé par le prochain bâtisseur
+     * @param tripId index de la course
+     * @throws IndexOutOfBoundsException si l'index est invalide
+     */
+    void releaseTripFront(int tripId) {
+        ParetoFront.Builder builder = tripFront(tripId);
+        if (builder == null) return;
+        setTripFront(tripId, null);
+        if (builder.isInSlab(slab)) slab.release(builder);
+    }
+
+    /**
+     * Fonction qui retourne le nombre maximal de frontières de courses vivantes (associées à une course
+     * et pas encore libérées) atteint depuis la dernière réinitialisation
+     * @return le nombre maximal de frontières de courses vivantes
+     */
+    int peakLiveTripFronts() {
+        return peakLiveTripFronts;
+    }
+
+    /**
+     * Fonction qui retourne une estimation du nombre d'octets occupés en mémoire par l'espace de travail,
+     * qui conserve ses tables et son arène d'une requête à l'autre
+     * @return le nombre d'octets (approximatif) occupés par l'espace de travail
+     */
+    long retainedBytes() {
+        // Chaque entrée d'une table de bâtisseurs occupe une référence et un numéro de génération
+        long tablesBytes = (long) (Long.BYTES + Integer.BYTES) * (stationFronts.length + tripFronts.length)
+                + (long) Integer.BYTES * walkMinutes.length;
+        return tablesBytes + slab.retainedBytes();
+    }
+
+    /**
+     * Fonction qui retourne un bâtisseur de frontière vide, dont les tuples sont stockés dans l'arène
+     * @return un bâtisseur de frontière vide
+     */
+    ParetoFront.Builder newFront() {
+        return slab.newBuilder();
+    }
+
+    /**
+     * Fonction qui retourne la frontière temporaire de la liaison courante, vide après une réinitialisation
+     * @return la frontière temporaire
+     */
+    ParetoFront.Builder scratchFront() {
+        return scratchFront;
+    }
+
+    /**
+     * Fonction qui retourne la table des durées de marche jusqu'à la gare d'arrivée, qui contient
+     * une entrée par gare. Son contenu est celui laissé par la requête précédente, et doit être écrit
+     * entièrement (p. ex. par Transfers.fillMinutesTo) avant d'être lu
+     * @return la table des durées de marche
+     */
+    int[] walkMinutes() {
+        return walkMinutes;
+    }
+}
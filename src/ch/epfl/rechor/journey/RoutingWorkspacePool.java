@@ -0,0 +1,97 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * Réserve d'espaces de travail de calcul de profils : un calcul emprunte un espace de travail au moyen
+ * d'acquire, puis le rend au moyen de release dès qu'il est terminé, afin qu'un calcul suivant (de n'importe
+ * quel fil d'exécution) le réutilise sans réallouer ses tables. Aucun espace de travail n'est donc lié à
+ * un fil d'exécution : un fil (p. ex. virtuel) qui ne calcule pas de profil n'en retient aucun.
+ * La réserve ne conserve qu'un nombre limité d'espaces de travail libres, les espaces rendus au-delà
+ * étant abandonnés au ramasse-miettes, et peut être vidée au moyen de clear.
+ * La réserve peut être utilisée par plusieurs fils d'exécution à la fois.
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+final class RoutingWorkspacePool {
+
+    private final int maxIdle;
+
+    // Espaces de travail libres, le dernier rendu (dont les tables sont sans doute encore en cache) en tête
+    private final ArrayDeque<RoutingWorkspace> idle = new ArrayDeque<>();
+
+    // Plus grande taille estimée d'un espace de travail rendu à la réserve, en octets
+    private long peakWorkspaceBytes = 0;
+
+    // Plus grand nombre de frontières de courses vivantes simultanément lors d'un calcul d'un espace rendu
+    private int peakLiveTripFronts = 0;
+
+    /**
+     * Constructeur qui construit une réserve vide, qui conserve au plus le nombre donné d'espaces libres
+     * @param maxIdle nombre maximal d'espaces de travail libres conservés
+     * @throws IllegalArgumentException si le nombre est négatif
+     */
+    RoutingWorkspacePool(int maxIdle) {
+        Preconditions.checkArgument(maxIdle >= 0);
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Méthode qui emprunte un espace de travail libre de la réserve, ou un nouvel espace si elle n'en a
+     * aucun. L'espace emprunté appartient à l'appelant jusqu'à ce qu'il le rende au moyen de release
+     * @return un espace de travail, à réinitialiser avant usage
+     */
+    synchronized RoutingWorkspace acquire() {
+        RoutingWorkspace workspace = idle.pollFirst();
+        return workspace != null ? workspace : new RoutingWorkspace();
+    }
+
+    /**
+     * Méthode qui rend à la réserve l'espace de travail donné, que l'appelant ne doit plus utiliser
+     * (ni les bâtisseurs qu'il a fournis). Si la réserve contient déjà le nombre maximal d'espaces libres,
+     * l'espace rendu est abandonné
+     * @param workspace l'espace de travail emprunté
+     */
+    synchronized void release(RoutingWorkspace workspace) {
+        peakWorkspaceBytes = Math.max(peakWorkspaceBytes, Objects.requireNonNull(workspace).retainedBytes());
+        peakLiveTripFronts = Math.max(peakLiveTripFronts, workspace.peakLiveTripFronts());
+        if (idle.size() < maxIdle) idle.addFirst(workspace);
+    }
+
+    /**
+     * Méthode qui abandonne tous les espaces de travail libres de la réserve, afin que la mémoire qu'ils
+     * occupent puisse être récupérée. Les espaces empruntés ne sont pas concernés
+     */
+    synchronized void clear() {
+        idle.clear();
+    }
+
+    /**
+     * Méthode qui retourne le nombre d'espaces de travail libres de la réserve
+     * @return le nombre d'espaces de travail libres
+     */
+    synchronized int idleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Méthode qui retourne la plus grande taille estimée d'un espace de travail rendu à la réserve jusqu'ici,
+     * soit la mémoire nécessaire à l'un des calculs (0 si aucun espace n'a été rendu)
+     * @return le nombre d'octets (approximatif) du plus grand espace de travail rendu
+     */
+    synchronized long peakWorkspaceBytes() {
+        return peakWorkspaceBytes;
+    }
+
+    /**
+     * Méthode qui retourne le plus grand nombre de frontières de courses vivantes simultanément atteint
+     * lors du dernier calcul de l'un des espaces de travail rendus à la réserve jusqu'ici (0 si aucun)
+     * @return le nombre maximal de frontières de courses vivantes lors d'un calcul
+     */
+    synchronized int peakLiveTripFronts() {
+        return peakLiveTripFronts;
+    }
+}
@@ -0,0 +1,338 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.Preconditions;
+import ch.epfl.rechor.timetable.mapped.FileTimeTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Classe qui représente un coordinateur de précalcul des profils, qui partage les gares d'arrivée
+ * entre plusieurs processus de calcul (des JVM distinctes, chacune exécutant PrecomputeJob pour sa part),
+ * afin que chacun ait son propre tas et que les pauses du ramasse-miettes de l'un ne ralentissent pas les autres.
+ * Tous les processus projettent en mémoire le même horaire (FileTimeTable), dont les pages sont donc
+ * partagées.
+ * <p>
+ * Chaque processus écrit ses profils dans son propre stock, dans un sous-répertoire du stock final.
+ * Lorsqu'il se termine avec succès, ses profils sont déplacés dans le stock final. Un processus qui échoue
+ * est relancé, au plus un nombre de fois donné, et reprend là où il s'était arrêté. Une part dont tous les
+ * profils sont déjà dans le stock final n'est pas relancée. Les processus ne communiquent avec le
+ * coordinateur qu'au moyen de fichiers et de leur code de sortie, ce qui permettrait de les exécuter
+ * sur d'autres machines.
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+public final class ShardedPrecompute {
+
+    // Sous-répertoire du stock final contenant les stocks et les journaux des processus
+    private static final String SHARDS_DIRECTORY = ".shards";
+
+    // Nombre de parts, de tentatives par part et mémoire par processus (en Mio) par défaut
+    private static final int DEFAULT_SHARDS = 2;
+    private static final int DEFAULT_ATTEMPTS = 3;
+    private static final int DEFAULT_WORKER_HEAP_MIB = 2048;
+
+    /**
+     * Commande qui lance le processus de calcul d'une part
+     */
+    @FunctionalInterface
+    interface WorkerCommand {
+        /**
+         * Fonction qui retourne la commande lançant le processus de calcul de la part donnée
+         * @param shardIndex index de la part
+         * @param shardCount nombre de parts
+         * @param shardDirectory répertoire du stock dans lequel le processus écrit ses profils
+         * @param firstDate premier jour de la période
+         * @param lastDate dernier jour de la période (inclus)
+         * @return la commande, sous forme de liste de mots
+         */
+        List<String> command(int shardIndex, int shardCount, Path shardDirectory,
+                             LocalDate firstDate, LocalDate lastDate);
+    }
+
+    /**
+     * Bilan d'une exécution du coordinateur
+     * @param shardCount nombre de parts
+     * @param launchedWorkers nombre de processus lancés, tentatives répétées comprises
+     * @param mergedProfiles nombre de profils déplacés dans le stock final
+     * @param elapsed durée de l'exécution
+     */
+    public record Report(int shardCount, int launchedWorkers, int mergedProfiles, Duration elapsed) {
+
+        /**
+         * Constructeur compact, vérifiant que les nombres ne sont pas négatifs et que la durée n'est pas nulle
+         * @throws IllegalArgumentException si l'un des nombres est négatif
+         */
+        public Report {
+            Preconditions.checkArgument(shardCount >= 0 && launchedWorkers >= 0 && mergedProfiles >= 0);
+            Objects.requireNonNull(elapsed);
+        }
+    }
+
+    private final ProfileStore store;
+    private final Path shardsDirectory;
+    private final int stationsCount;
+    private final int shardCount;
+    private final int maxAttempts;
+    private final WorkerCommand workerCommand;
+
+    /**
+     * Constructeur qui construit un coordinateur dont les processus de calcul sont des JVM lancées avec
+     * le même environnement d'exécution que la JVM courante
+     * @param timeTableDirectory répertoire de l'horaire
+     * @param storeDirectory répertoire du stock final
+     * @param shardCount nombre de parts, et donc de processus de calcul
+     * @param maxAttempts nombre maximal de lancements du processus d'une part
+     * @param workerThreads nombre maximal de fils de calcul de chaque processus
+     * @param workerHeapMib taille maximale du tas de chaque processus, en mébioctets
+     * @throws IOException en cas d'erreur de lecture de l'horaire
+     * @throws IllegalArgumentException si l'un des nombres n'est pas strictement positif
+     */
+    public ShardedPrecompute(Path timeTableDirectory, Path storeDirectory, int shardCount, int maxAttempts,
+                             int workerThreads, int workerHeapMib) throws IOException {
+        this(new ProfileStore(storeDirectory, ProfileStore.versionOf(timeTableDirectory)),
+                storeDirectory,
+                FileTimeTable.in(timeTableDirectory).stations().size(),
+                shardCount,
+                maxAttempts,
+                javaWorkerCommand(timeTableDirectory, workerThreads, workerHeapMib));
+        Preconditions.checkArgument(workerThreads > 0 && workerHeapMib > 0);
+    }
+
+    /**
+     * Constructeur qui construit un coordinateur dont les processus de calcul sont lancés au moyen
+     * de la commande donnée
+     * @param store stock final
+     * @param storeDirectory répertoire du stock final
+     * @param stationsCount nombre de gares de l'horaire
+     * @param shardCount nombre de parts, et donc de processus de calcul
+     * @param maxAttempts nombre maximal de lancements du processus d'une part
+     * @param workerCommand commande lançant le processus d'une part, qui doit écrire ses profils dans le stock
+     *                      (de même version que le stock final) du répertoire donné, et se terminer avec
+     *                      le code de sortie 0 s'il les a tous écrits
+     * @throws IllegalArgumentException si le nombre de parts ou de tentatives n'est pas strictement positif
+     */
+    ShardedPrecompute(ProfileStore store, Path storeDirectory, int stationsCount, int shardCount,
+                      int maxAttempts, WorkerCommand workerCommand) {
+        Preconditions.checkArgument(shardCount > 0 && maxAttempts > 0);
+        this.store = Objects.requireNonNull(store);
+        this.shardsDirectory = storeDirectory.resolve(SHARDS_DIRECTORY);
+        this.stationsCount = stationsCount;
+        this.shardCount = shardCount;
+        this.maxAttempts = maxAttempts;
+        this.workerCommand = Objects.requireNonNull(workerCommand);
+    }
+
+    /**
+     * Méthode qui calcule, au moyen des processus de calcul, les profils de toutes les gares d'arrivée
+     * pour tous les jours de la période donnée, et les place dans le stock final. Les profils des parts
+     * qui ont réussi y sont placés même si d'autres parts ont échoué ; les profils déjà calculés par
+     * celles-ci sont conservés dans leur stock, et seront repris lors de l'exécution suivante
+     * @param firstDate premier jour de la période
+     * @param lastDate dernier jour de la période (inclus)
+     * @return le bilan de l'exécution
+     * @throws IllegalArgumentException si le dernier jour précède le premier
+     * @throws IOException en cas d'erreur de lancement d'un processus, de déplacement d'un profil,
+     * ou si le processus d'une part a échoué à chacune de ses tentatives
+     * @throws InterruptedException si le fil d'exécution appelant est interrompu pendant l'attente,
+     * auquel cas les processus en cours sont détruits
+     */
+    public Report run(LocalDate firstDate, LocalDate lastDate) throws IOException, InterruptedException {
+        Preconditions.checkArgument(!lastDate.isBefore(firstDate));
+        long startNanos = System.nanoTime();
+        Files.createDirectories(shardsDirectory);
+
+        // Les parts déjà entièrement dans le stock final ne sont pas relancées
+        List<Integer> pending = new ArrayList<>();
+        for (int shardIndex = 0; shardIndex < shardCount; shardIndex++)
+            if (!isStored(shardIndex, firstDate, lastDate)) pending.add(shardIndex);
+
+        int[] attempts = new int[shardCount];
+        int launchedWorkers = 0;
+        List<Integer> succeeded = new ArrayList<>();
+        List<Integer> failed = new ArrayList<>();
+        Map<Integer, Process> running = new TreeMap<>();
+        try {
+            while (!pending.isEmpty()) {
+                for (int shardIndex : pending) {
+                    running.put(shardIndex, launch(shardIndex, firstDate, lastDate));
+                    attempts[shardIndex] += 1;
+                    launchedWorkers += 1;
+                }
+
+                // Les parts qui ont échoué sont relancées ensemble, et reprennent là où elles s'étaient arrêtées
+                pending = new ArrayList<>();
+                for (Map.Entry<Integer, Process> entry : running.entrySet()) {
+                    int shardIndex = entry.getKey();
+                    if (entry.getValue().waitFor() == 0) succeeded.add(shardIndex);
+                    else if (attempts[shardIndex] < maxAttempts) pending.add(shardIndex);
+                    else failed.add(shardIndex);
+                }
+                running.clear();
+            }
+        } finally {
+            for (Process process : running.values()) process.destroyForcibly();
+        }
+
+        int mergedProfiles = 0;
+        for (int shardIndex : succeeded) {
+            Path shardDirectory = shardDirectory(shardIndex);
+            mergedProfiles += store.mergeFrom(shardDirectory);
+            deleteRecursively(shardDirectory);
+        }
+        if (!failed.isEmpty()) {
+            throw new IOException("Échec des parts " + failed + " après " + maxAttempts
+                    + " tentatives (voir les journaux dans " + shardsDirectory + ")");
+        }
+        return new Report(shardCount, launchedWorkers, mergedProfiles,
+                Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Fonction qui retourne le répertoire du stock du processus de la part donnée
+     * @param shardIndex index de la part
+     * @return le répertoire du stock de la part
+     */
+    Path shardDirectory(int shardIndex) {
+        return shardsDirectory.resolve(Integer.toString(shardIndex));
+    }
+
+    /**
+     * Fonction qui retourne vrai si et seulement si tous les profils de la part donnée sont dans le stock final
+     * @param shardIndex index de la part
+     * @param firstDate premier jour de la période
+     * @param lastDate dernier jour de la période (inclus)
+     * @return vrai si tous les profils de la part sont stockés
+     */
+    private boolean isStored(int shardIndex, LocalDate firstDate, LocalDate lastDate) {
+        for (LocalDate date = firstDate; !date.isAfter(lastDate); date = date.plusDays(1)) {
+            for (int arrStationId = shardIndex; arrStationId < stationsCount; arrStationId += shardCount)
+                if (!store.contains(date, arrStationId)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fonction qui lance le processus de la part donnée, dont les sorties sont ajoutées à son journal
+     * @param shardIndex index de la part
+     * @param firstDate premier jour de la période
+     * @param lastDate dernier jour de la période (inclus)
+     * @return le processus lancé
+     * @throws IOException en cas d'erreur de lancement
+     */
+    private Process launch(int shardIndex, LocalDate firstDate, LocalDate lastDate) throws IOException {
+        Path log = shardsDirectory.resolve("shard-" + shardIndex + ".log");
+        return new ProcessBuilder(
+                workerCommand.command(shardIndex, shardCount, shardDirectory(shardIndex), firstDate, lastDate))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()))
+                .start();
+    }
+
+    /**
+     * Fonction qui supprime le répertoire donné et tout son contenu, s'il existe
+     * @param directory répertoire à supprimer
+     * @throws IOException en cas d'erreur de suppression
+     */
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            paths = walk.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path path : paths) Files.delete(path);
+    }
+
+    /**
+     * Fonction qui retourne la commande lançant la classe principale donnée dans une nouvelle JVM,
+     * avec les options données et le même chemin de classes (ou de modules) que la JVM courante
+     * @param jvmOptions options de la JVM
+     * @param mainClass classe principale
+     * @return la commande, sans les arguments de la classe principale
+     */
+    static List<String> javaCommand(List<String> jvmOptions, Class<?> mainClass) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+
+        // Le module de calcul vectoriel, facultatif, n'est ajouté que s'il l'a été à la JVM courante
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+            command.addAll(List.of("--add-modules", "jdk.incubator.vector"));
+
+        Module module = mainClass.getModule();
+        String modulePath = System.getProperty("jdk.module.path");
+        if (module.isNamed() && modulePath != null) {
+            command.addAll(List.of("--module-path", modulePath, "-m", module.getName() + "/" + mainClass.getName()));
+        } else {
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), mainClass.getName()));
+        }
+        return command;
+    }
+
+    /**
+     * Fonction qui retourne la commande lançant PrecomputeJob dans une nouvelle JVM pour une part donnée
+     * @param timeTableDirectory répertoire de l'horaire
+     * @param workerThreads nombre maximal de fils de calcul du processus
+     * @param workerHeapMib taille maximale du tas du processus, en mébioctets, dont la moitié sert de budget
+     *                      aux calculs
+     * @return la commande lançant le processus d'une part
+     */
+    private static WorkerCommand javaWorkerCommand(Path timeTableDirectory, int workerThreads, int workerHeapMib) {
+        return (shardIndex, shardCount, shardDirectory, firstDate, lastDate) -> {
+            List<String> command = javaCommand(List.of("-Xmx" + workerHeapMib + "m"), PrecomputeJob.class);
+            command.addAll(List.of(
+                    timeTableDirectory.toString(),
+                    shardDirectory.toString(),
+                    firstDate.toString(),
+                    lastDate.toString(),
+                    Integer.toString(workerThreads),
+                    Integer.toString(workerHeapMib / 2),
+                    Integer.toString(shardIndex),
+                    Integer.toString(shardCount)));
+            return command;
+        };
+    }
+
+    /**
+     * Point d'entrée du coordinateur, dont les arguments sont, dans l'ordre : le répertoire de l'horaire,
+     * le répertoire du stock de profils, le premier jour de la période, et éventuellement le dernier jour
+     * (par défaut le premier), le nombre de parts (par défaut 2), le nombre maximal de tentatives par part
+     * (par défaut 3) et la taille maximale du tas de chaque processus en mébioctets (par défaut 2048).
+     * Les processeurs sont répartis entre les processus de calcul
+     * @param args arguments
+     * @throws IOException en cas d'erreur de lecture de l'horaire ou de déplacement d'un profil,
+     * ou si une part a échoué
+     * @throws InterruptedException si le coordinateur est interrompu
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3 || args.length > 7) {
+            System.err.println("Usage : ShardedPrecompute <horaire> <profils> <premier jour> [dernier jour] "
+                    + "[parts] [tentatives] [tas par part (Mio)]");
+            System.exit(2);
+        }
+
+        LocalDate firstDate = LocalDate.parse(args[2]);
+        LocalDate lastDate = args.length > 3 ? LocalDate.parse(args[3]) : firstDate;
+        int shardCount = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_SHARDS;
+        int maxAttempts = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_ATTEMPTS;
+        int workerHeapMib = args.length > 6 ? Integer.parseInt(args[6]) : DEFAULT_WORKER_HEAP_MIB;
+        int workerThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / shardCount);
+
+        ShardedPrecompute coordinator = new ShardedPrecompute(
+                Path.of(args[0]), Path.of(args[1]), shardCount, maxAttempts, workerThreads, workerHeapMib);
+        Report report = coordinator.run(firstDate, lastDate);
+        System.out.printf("Terminé en %d s : %d parts, %d processus lancés, %d profils ajoutés au stock%n",
+                report.elapsed().toSeconds(), report.shardCount(), report.launchedWorkers(),
+                report.mergedProfiles());
+    }
+}
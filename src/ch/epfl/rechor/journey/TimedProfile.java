@@ -0,0 +1,31 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Représente le profil calculé pour une gare d'arrivée, seul (voir Router.timedProfile) ou lors d'un calcul groupé,
+ * accompagné du temps qu'a pris son calcul et du nombre maximal de frontières de courses vivantes
+ * simultanément pendant celui-ci, qui détermine la mémoire nécessaire au calcul
+ * @param arrStationId l'identifiant de la gare d'arrivée
+ * @param profile le profil calculé pour cette gare
+ * @param computeTime la durée du calcul du profil
+ * @param peakLiveTripFronts le nombre maximal de frontières de courses vivantes pendant le calcul
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+public record TimedProfile(int arrStationId, Profile profile, Duration computeTime, int peakLiveTripFronts) {
+
+    /**
+     * Constructeur compact, vérifiant que le profil et la durée ne sont pas nuls,
+     * et que le nombre de frontières n'est pas négatif
+     * @throws IllegalArgumentException si le nombre de frontières est négatif
+     */
+    public TimedProfile {
+        Objects.requireNonNull(profile);
+        Objects.requireNonNull(computeTime);
+        Preconditions.checkArgument(peakLiveTripFronts >= 0);
+    }
+}
@@ -0,0 +1,62 @@
+package ch.epfl.rechor.journey;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static ch.epfl.rechor.journey.PackedCriteria.MASK_12_BITS;
+import static ch.epfl.rechor.journey.PackedCriteria.MASK_7_BITS;
+import static ch.epfl.rechor.journey.PackedCriteria.SHIFT_ARR_MINS;
+import static ch.epfl.rechor.journey.PackedCriteria.SHIFT_CHANGES;
+import static ch.epfl.rechor.journey.PackedCriteria.SHIFT_DEP_MINS;
+
+/**
+ * Version vectorielle du noyau de Dominance, qui compare autant de tuples à la fois que le permet
+ * le processeur. Cette classe n'est chargée que si le module jdk.incubator.vector est disponible.
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+final class VectorDominance {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    // Pour rendre la classe non instantiable
+    private VectorDominance() {}
+
+    /**
+     * Version vectorielle de Dominance.anyDominatesOrIsEqual
+     * @param packedTuples tableau de tuples empaquetés
+     * @param from index du premier tuple (inclus)
+     * @param to index du dernier tuple (exclu)
+     * @param packedTuple tuple de critères empaqueté
+     * @return vrai si l'un des tuples domine ou est égal au tuple donné
+     * @throws IllegalArgumentException si l'un des tuples a une heure de départ et pas le tuple donné, ou inversement
+     */
+    static boolean anyDominatesOrIsEqual(long[] packedTuples, int from, int to, long packedTuple) {
+        long depField = (packedTuple >>> SHIFT_DEP_MINS) & MASK_12_BITS;
+        long arrField = (packedTuple >>> SHIFT_ARR_MINS) & MASK_12_BITS;
+        long changesField = (packedTuple >>> SHIFT_CHANGES) & MASK_7_BITS;
+
+        int i = from;
+        for (int upperBound = from + SPECIES.loopBound(to - from); i < upperBound; i += SPECIES.length()) {
+            LongVector tuples = LongVector.fromArray(SPECIES, packedTuples, i);
+            LongVector tDepFields = tuples.lanewise(VectorOperators.LSHR, SHIFT_DEP_MINS).and(MASK_12_BITS);
+
+            // Soit les deux ont une heure de départ, soit aucun des deux
+            VectorMask<Long> withoutDepMins = tDepFields.compare(VectorOperators.EQ, 0);
+            if (depField == 0 ? !withoutDepMins.allTrue() : withoutDepMins.anyTrue())
+                throw new IllegalArgumentException();
+
+            VectorMask<Long> dominating = tDepFields.compare(VectorOperators.LE, depField)
+                    .and(tuples.lanewise(VectorOperators.LSHR, SHIFT_ARR_MINS).and(MASK_12_BITS)
+                            .compare(VectorOperators.LE, arrField))
+                    .and(tuples.lanewise(VectorOperators.LSHR, SHIFT_CHANGES).and(MASK_7_BITS)
+                            .compare(VectorOperators.LE, changesField));
+            if (dominating.anyTrue()) return true;
+        }
+
+        // Les derniers tuples, moins nombreux qu'un vecteur, sont comparés un à un
+        return Dominance.scalarAnyDominatesOrIsEqual(packedTuples, i, to, packedTuple);
+    }
+}
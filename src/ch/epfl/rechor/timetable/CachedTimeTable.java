@@ -1,30 +1,144 @@
 package ch.epfl.rechor.timetable;
+import ch.epfl.rechor.Preconditions;
+
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Classe qui représente un horaire dont les données qui dépendent de la date sont stockées
- * dans un cache. De la sorte, si ces données sont demandées plusieurs fois de suite pour
- * une seule et même date, elles ne sont pas rechargées à chaque fois.
+ * dans un cache. De la sorte, si ces données sont demandées plusieurs fois pour une seule et même date,
+ * elles ne sont pas rechargées à chaque fois.
+ * Le cache contient les données d'un nombre de jours donné (p. ex. la veille, le jour même et le lendemain) ;
+ * lorsqu'il est plein, les données du jour utilisé le moins récemment en sont retirées.
+ * Le cache peut être utilisé par plusieurs fils d'exécution à la fois : les données d'une date
+ * sont publiées ensemble, de manière atomique, et si plusieurs fils les demandent en même temps
+ * alors qu'elles ne sont pas encore dans le cache, elles ne sont chargées qu'une seule fois.
+ * <p>
+ * Le cache peut aussi précharger, en arrière-plan, les données de la veille et du lendemain de chaque jour
+ * demandé pour la première fois, et préparer leur accès (voir TimeTable.warmUp) : une requête portant sur
+ * le jour suivant (p. ex. peu avant minuit) trouve alors ses données prêtes. Les préchargements réussis
+ * ou non (lorsqu'une requête a dû charger elle-même les données d'un jour) sont comptés.
+ * <p>
+ * Les entrées du cache sont identifiées par la clé du contenu des jours (voir TimeTable.dayContentKey),
+ * et non par leur date : des jours aux données identiques (p. ex. tous les jours ouvrables d'une semaine
+ * ordinaire) partagent donc une seule et même entrée, chargée une seule fois.
  * @author Yoann Salamin (390522)
  * @author Axel Verga (398787)
  */
 public final class CachedTimeTable implements TimeTable {
 
+    // Nombre de jours gardés en cache par défaut : la veille, le jour même et le lendemain
+    private static final int DEFAULT_DAYS = 3;
+
+    // Nombre minimal de jours gardés en cache pour pouvoir précharger la veille et le lendemain
+    // sans retirer du cache le jour demandé
+    private static final int MIN_PREFETCH_DAYS = 3;
+
     private final TimeTable underlyingTimetable;
 
-    // Variables qui vont contenir les données misent en cache
-    private Connections currentCachedConnections = null;
-    private Trips       currentCachedTrips       = null;
+    // Données mises en cache pour une date, publiées ensemble afin qu'un fil d'exécution
+    // ne puisse jamais voir les courses d'une date et les liaisons d'une autre
+    private record DayData(Trips trips, Connections connections) {}
+
+    /**
+     * Entrée du cache : les données d'un jour, disponibles une fois chargées par le premier fil
+     * d'exécution qui les a demandées, l'instant de leur dernière utilisation, et si elles ont été
+     * préchargées, si elles ont déjà été demandées par une requête
+     */
+    private static final class DayEntry {
+        private final CompletableFuture<DayData> data = new CompletableFuture<>();
+        private volatile long lastUse;
+        private final boolean prefetched;
+        private final AtomicBoolean requested;
+
+        private DayEntry(long lastUse, boolean prefetched) {
+            this.lastUse = lastUse;
+            this.prefetched = prefetched;
+            this.requested = new AtomicBoolean(!prefetched);
+        }
+    }
+
+    /**
+     * Statistiques du préchargement
+     * @param hits nombre de jours demandés pour la première fois dont les données avaient été préchargées
+     * @param misses nombre de jours dont les données ont dû être chargées par une requête
+     * @param prefetches nombre de jours dont les données ont été préchargées
+     */
+    public record PrefetchStats(long hits, long misses, long prefetches) {}
+
+    // Nombre maximal de jours gardés en cache
+    private final int maxDays;
+
+    // Les entrées du cache, par clé de contenu, et l'horloge logique qui date leurs utilisations
+    private final Map<String, DayEntry> days = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    // Clés de contenu des jours, dont le calcul peut être coûteux, mémorisées pour tous les jours demandés
+    private final Map<LocalDate, String> dayKeys = new ConcurrentHashMap<>();
 
-    // La date actuelle du cache
-    private LocalDate cachedDate = null;
+    // Exécuteur des préchargements, ou null si les données ne sont pas préchargées, et leurs statistiques
+    private final Executor prefetchExecutor;
+    private final AtomicLong prefetchHits = new AtomicLong();
+    private final AtomicLong prefetchMisses = new AtomicLong();
+    private final AtomicLong prefetches = new AtomicLong();
+
+    // Table des gares des arrêts, obtenue au premier appel de stopStations
+    private volatile StopStations cachedStopStations = null;
 
     /**
-     * Crée un horaire mis en cache autour de l'horaire sous-jacent donné.
+     * Crée un horaire mis en cache autour de l'horaire sous-jacent donné, qui garde les données
+     * de trois jours au plus
      * @param timeTable l'horaire dont on veut mettre en cache les données
      */
     public CachedTimeTable(TimeTable timeTable) {
+        this(timeTable, DEFAULT_DAYS);
+    }
+
+    /**
+     * Crée un horaire mis en cache autour de l'horaire sous-jacent donné, qui garde les données
+     * du nombre de jours donné au plus
+     * @param timeTable l'horaire dont on veut mettre en cache les données
+     * @param maxDays le nombre maximal de jours dont les données sont gardées en cache
+     * @throws IllegalArgumentException si le nombre de jours n'est pas strictement positif
+     */
+    public CachedTimeTable(TimeTable timeTable, int maxDays) {
+        Preconditions.checkArgument(maxDays > 0);
+        this.underlyingTimetable = timeTable;
+        this.maxDays = maxDays;
+        this.prefetchExecutor = null;
+    }
+
+    /**
+     * Crée un horaire mis en cache autour de l'horaire sous-jacent donné, qui garde les données
+     * du nombre de jours donné au plus, et qui précharge au moyen de l'exécuteur donné les données
+     * de la veille et du lendemain de chaque jour demandé pour la première fois
+     * @param timeTable l'horaire dont on veut mettre en cache les données
+     * @param maxDays le nombre maximal de jours dont les données sont gardées en cache
+     * @param prefetchExecutor l'exécuteur des préchargements (p. ex. un fil d'exécution d'arrière-plan)
+     * @throws IllegalArgumentException si le nombre de jours est inférieur à trois
+     */
+    public CachedTimeTable(TimeTable timeTable, int maxDays, Executor prefetchExecutor) {
+        Preconditions.checkArgument(maxDays >= MIN_PREFETCH_DAYS);
         this.underlyingTimetable = timeTable;
+        this.maxDays = maxDays;
+        this.prefetchExecutor = Objects.requireNonNull(prefetchExecutor);
+    }
+
+    /**
+     * Fonction qui retourne les statistiques du préchargement depuis la création de l'horaire
+     * @return les statistiques du préchargement
+     */
+    public PrefetchStats prefetchStats() {
+        return new PrefetchStats(prefetchHits.get(), prefetchMisses.get(), prefetches.get());
     }
 
     // Fonctions déléguées à l'autre horaire
@@ -74,39 +188,194 @@ public final class CachedTimeTable implements TimeTable {
         return underlyingTimetable.platformName(stopId);
     }
 
+    @Override
+    public void warmUp(LocalDate date) {
+        underlyingTimetable.warmUp(date);
+    }
+
+    @Override
+    public String dayContentKey(LocalDate date) {
+
+        // Si plusieurs fils d'exécution calculent la clé d'un jour en même temps, ils obtiennent
+        // la même, et il importe peu laquelle est finalement conservée
+        String key = dayKeys.get(date);
+        if (key == null) {
+            key = underlyingTimetable.dayContentKey(date);
+            dayKeys.put(date, key);
+        }
+        return key;
+    }
+
+    @Override
+    public StopStations stopStations() {
+
+        // La table ne dépend pas de la date, on ne la demande donc qu'une seule fois.
+        // Si plusieurs fils d'exécution la demandent en même temps, ils obtiennent des tables
+        // identiques, et il importe peu laquelle est finalement conservée
+        StopStations stopStations = cachedStopStations;
+        if (stopStations == null) {
+            stopStations = underlyingTimetable.stopStations();
+            cachedStopStations = stopStations;
+        }
+        return stopStations;
+    }
+
     // Fonctions avec données mises en cache
 
     @Override
     public Trips tripsFor(LocalDate date) {
 
         // On vérifie si la donnée est déjà mise en cache et si la date a changé
-        ensureCacheFor(date);
-
-        return currentCachedTrips;
+        return dayDataFor(date).trips();
     }
 
     @Override
     public Connections connectionsFor(LocalDate date) {
 
         // On vérifie si la donnée est déjà mise en cache et si la date a changé
-        ensureCacheFor(date);
-
-        return currentCachedConnections;
+        return dayDataFor(date).connections();
     }
 
 
     /**
-     * Fonction qui recalcule le cache s'il le faut
+     * Fonction qui retourne les données du cache pour la date donnée, en les chargeant s'il le faut
+     * @param date la date voulue
+     * @return les données de la date voulue
+     */
+    private DayData dayDataFor(LocalDate date) {
+        long now = clock.incrementAndGet();
+        String key = dayContentKey(date);
+
+        // Lecture sans verrou dans le cas fréquent où le jour (ou un jour de même contenu) est dans le cache
+        DayEntry entry = days.get(key);
+        if (entry == null) {
+            // Sinon, seul le fil d'exécution qui parvient à ajouter l'entrée charge les données ;
+            // les autres attendent qu'il les ait chargées
+            DayEntry newEntry = new DayEntry(now, false);
+            entry = days.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                prefetchMisses.incrementAndGet();
+                DayData day = load(date, key, newEntry);
+                prefetchAround(date, now);
+                return day;
+            }
+        }
+
+        entry.lastUse = now;
+        if (!entry.requested.getAndSet(true)) {
+            // Première demande d'un jour préchargé, dont on précharge à son tour les voisins
+            prefetchHits.incrementAndGet();
+            prefetchAround(date, now);
+        }
+        return await(entry);
+    }
+
+    /**
+     * Fonction qui charge les données de la date donnée dans l'entrée donnée, ajoutée au cache par l'appelant,
+     * puis retire du cache les jours en trop
      * @param date la date voulue
+     * @param key la clé du contenu de la date voulue
+     * @param entry l'entrée du cache de la date voulue
+     * @return les données de la date voulue
+     */
+    private DayData load(LocalDate date, String key, DayEntry entry) {
+        DayData day;
+        try {
+            day = new DayData(underlyingTimetable.tripsFor(date), underlyingTimetable.connectionsFor(date));
+        } catch (RuntimeException | Error e) {
+            // L'entrée est retirée, afin que le chargement soit retenté lors de la prochaine demande
+            days.remove(key, entry);
+            entry.data.completeExceptionally(e);
+            throw e;
+        }
+        entry.data.complete(day);
+        evictLeastRecentlyUsed();
+        return day;
+    }
+
+    /**
+     * Fonction qui lance, si le préchargement est actif, le préchargement des données de la veille
+     * et du lendemain de la date donnée, qui ne sont pas encore dans le cache
+     * @param date la date demandée
+     * @param now l'instant de la demande, qui devient celui de la dernière utilisation des jours préchargés
+     */
+    private void prefetchAround(LocalDate date, long now) {
+        if (prefetchExecutor == null) return;
+        for (LocalDate neighbour : List.of(date.plusDays(1), date.minusDays(1))) {
+            String key = dayKeys.get(neighbour);
+            if (key != null && days.containsKey(key)) continue;
+            try {
+                prefetchExecutor.execute(() -> prefetch(neighbour, now));
+            } catch (RejectedExecutionException e) {
+                // L'exécuteur a été arrêté : le préchargement n'est qu'une optimisation, on y renonce
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fonction qui précharge les données de la date donnée, si elles ne sont pas déjà dans le cache,
+     * et prépare l'accès à ses fichiers
+     * @param date la date à précharger
+     * @param lastUse l'instant de la dernière utilisation attribué au jour préchargé
+     */
+    private void prefetch(LocalDate date, long lastUse) {
+        try {
+            String key = dayContentKey(date);
+            DayEntry entry = new DayEntry(lastUse, true);
+            if (days.putIfAbsent(key, entry) != null) return;
+            load(date, key, entry);
+            underlyingTimetable.warmUp(date);
+            prefetches.incrementAndGet();
+        } catch (RuntimeException e) {
+            // Le jour peut ne pas exister (p. ex. au-delà de la fin de l'horaire) : le préchargement
+            // n'est qu'une optimisation, et une éventuelle requête pour ce jour relèvera l'erreur
+        }
+    }
+
+    /**
+     * Fonction qui retire du cache les données des jours utilisés le moins récemment,
+     * tant qu'il contient davantage de jours que son nombre maximal
+     */
+    private void evictLeastRecentlyUsed() {
+        // Le cache ne contient que quelques jours, il est donc simplement parcouru
+        synchronized (days) {
+            while (days.size() > maxDays) {
+                Map.Entry<String, DayEntry> eldest = null;
+                for (Map.Entry<String, DayEntry> e : days.entrySet()) {
+                    if (eldest == null || isOlder(e.getValue(), eldest.getValue())) eldest = e;
+                }
+                days.remove(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Fonction qui retourne vrai si et seulement si la première entrée donnée doit être retirée du cache
+     * avant la seconde : si elle a été utilisée moins récemment ou, à égalité, si elle a été préchargée
+     * sans avoir encore été demandée
+     * @param entry une entrée du cache
+     * @param other une autre entrée du cache
+     * @return vrai si la première entrée est plus ancienne que la seconde
+     */
+    private static boolean isOlder(DayEntry entry, DayEntry other) {
+        if (entry.lastUse != other.lastUse) return entry.lastUse < other.lastUse;
+        return !entry.requested.get() && other.requested.get();
+    }
+
+    /**
+     * Fonction qui attend que les données de l'entrée donnée soient chargées, et les retourne
+     * @param entry l'entrée du cache
+     * @return les données de l'entrée
      */
-    private void ensureCacheFor(LocalDate date) {
-        if (currentCachedTrips == null
-                || currentCachedConnections == null
-                || cachedDate == null
-                || !cachedDate.equals(date)) {
-            currentCachedTrips       = underlyingTimetable.tripsFor(date);
-            currentCachedConnections = underlyingTimetable.connectionsFor(date);
-            cachedDate               = date;
+    private static DayData await(DayEntry entry) {
+        try {
+            return entry.data.join();
+        } catch (CompletionException e) {
+            // On relance telle quelle l'exception levée par le chargement
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
         }
     }
 }
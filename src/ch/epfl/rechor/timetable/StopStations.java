@@ -0,0 +1,63 @@
+package ch.epfl.rechor.timetable;
+
+import java.util.Arrays;
+
+/**
+ * Classe immuable qui donne, pour chaque index d'arrêt (gares puis voies ou quais), l'index de la gare
+ * correspondante, c.-à-d. la valeur de TimeTable.stationId pour chacun d'eux. Elle permet de remplacer,
+ * dans les boucles critiques, les appels à stationId (et les appels virtuels qu'ils impliquent) par un simple
+ * accès à un tableau, qui n'est jamais exposé : la table peut donc être partagée sans risque par tous
+ * les fils d'exécution
+ * @author Yoann Salamin (390522)
+ * @author Axel Verga (398787)
+ */
+public final class StopStations implements Indexed {
+
+    // Index de la gare de chaque arrêt
+    private final int[] stationIds;
+
+    /**
+     * Constructeur qui construit la table des gares des arrêts des gares et des voies ou quais donnés
+     * @param stations les gares
+     * @param platforms les voies ou quais
+     */
+    public StopStations(Stations stations, Platforms platforms) {
+        int stationsCount = stations.size();
+        stationIds = new int[stationsCount + platforms.size()];
+
+        // Une gare est sa propre gare, une voie ou un quai a pour gare celle donnée par platforms
+        for (int stopId = 0; stopId < stationsCount; stopId++) stationIds[stopId] = stopId;
+        for (int platformId = 0; platformId < platforms.size(); platformId++)
+            stationIds[stationsCount + platformId] = platforms.stationId(platformId);
+    }
+
+    /**
+     * Fonction qui retourne l'index de la gare de l'arrêt d'index donné
+     * (qui peut être identique si l'arrêt en question est une gare)
+     * @param stopId un index d'arrêt
+     * @return l'index de la gare de l'arrêt d'index donné
+     * @throws IndexOutOfBoundsException si l'index est invalide
+     */
+    public int stationOf(int stopId) {
+        return stationIds[stopId];
+    }
+
+    /**
+     * Fonction qui retourne le nombre d'arrêts de la table (gares puis voies ou quais)
+     * @return le nombre d'arrêts
+     */
+    @Override
+    public int size() {
+        return stationIds.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof StopStations that && Arrays.equals(stationIds, that.stationIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(stationIds);
+    }
+}
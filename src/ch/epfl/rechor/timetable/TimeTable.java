@@ -94,6 +94,19 @@ public interface TimeTable {
         }
     }
 
+    /**
+     * Fonction qui retourne la table immuable donnant, pour chaque index d'arrêt (gares puis voies ou quais),
+     * l'index de la gare correspondante, c.-à-d. la valeur de stationId pour chacun d'eux.
+     * Cette table permet de remplacer, dans les boucles critiques, les appels à stationId par un simple
+     * accès à un tableau.
+     * L'implémentation par défaut la reconstruit à chaque appel, les horaires qui le peuvent
+     * (FileTimeTable, CachedTimeTable) ne la construisent qu'une seule fois.
+     * @return la table associant à chaque index d'arrêt l'index de sa gare
+     */
+    default StopStations stopStations() {
+        return new StopStations(stations(), platforms());
+    }
+
     /**
      * Fonction qui retourne le nom de voie ou de quai de l'arrêt d'index donné, ou null si cet arrêt est une gare.
      * @param stopId un index d'arrêt
@@ -109,4 +122,25 @@ public interface TimeTable {
         }
     }
 
+    /**
+     * Fonction qui prépare l'accès aux données du jour donné, qui devraient être demandées prochainement,
+     * p. ex. en chargeant en mémoire les fichiers qui les contiennent, afin que leur premier accès soit rapide.
+     * L'implémentation par défaut ne fait rien, les horaires dont les données sont dans des fichiers
+     * (p. ex. FileTimeTable) chargent ceux-ci.
+     * @param date une date qui représente un jour entier
+     */
+    default void warmUp(LocalDate date) {}
+
+    /**
+     * Fonction qui retourne une clé identifiant le contenu des données (courses et liaisons) du jour donné :
+     * deux jours de même clé ont des données identiques, si bien que tout ce qui en est déduit (p. ex. leurs
+     * profils, à la date près) peut être partagé entre eux. L'implémentation par défaut retourne la date
+     * elle-même, au format ISO, les horaires qui le peuvent (p. ex. FileTimeTable) une empreinte du contenu.
+     * @param date une date qui représente un jour entier
+     * @return la clé du contenu des données du jour
+     */
+    default String dayContentKey(LocalDate date) {
+        return date.toString();
+    }
+
 }
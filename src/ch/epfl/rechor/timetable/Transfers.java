@@ -1,6 +1,8 @@
 package ch.epfl.rechor.timetable;
 
+import ch.epfl.rechor.PackedRange;
 
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
@@ -35,6 +37,41 @@ public interface Transfers extends Indexed {
      */
     int arrivingAt(int stationId);
 
+    /**
+     * Fonction qui retourne l'intervalle empaqueté des positions, dans l'ordre des gares de départ
+     * (voir departingTransferId), des changements dont la gare de départ est celle d'index donné.
+     * Cet intervalle a la même sémantique que celui retourné par arrivingAt, mais ses bornes sont
+     * des positions qu'il faut convertir en index de changement au moyen de departingTransferId.
+     * L'implémentation par défaut parcourt tous les changements, celles qui le peuvent
+     * (p. ex. BufferedTransfers) utilisent un index construit une seule fois.
+     * @param stationId index de la gare de départ
+     * @return int représentant un intervalle empaqueté des positions des changements partant de la gare donnée
+     * @throws IndexOutOfBoundsException Erreur si l'index est invalide
+     */
+    default int departingFrom(int stationId) {
+        if (stationId < 0) throw new IndexOutOfBoundsException("Index invalide");
+
+        // Les changements partant des gares d'index inférieur précèdent ceux de la gare donnée
+        int start = 0, count = 0;
+        for (int i = 0; i < size(); i++) {
+            int depStationId = depStationId(i);
+            if (depStationId < stationId) start++;
+            else if (depStationId == stationId) count++;
+        }
+        return PackedRange.pack(start, start + count);
+    }
+
+    /**
+     * Fonction qui retourne l'index du changement se trouvant à la position donnée lorsque
+     * les changements sont triés par gare de départ (et, pour une même gare, par index).
+     * Cette méthode n'a pas d'implémentation par défaut, car il faudrait retrier les changements
+     * à chaque appel : une implémentation construit cet ordre une seule fois (voir BufferedTransfers).
+     * @param position position dans l'ordre des gares de départ, p. ex. l'une de celles de departingFrom
+     * @return l'index du changement se trouvant à cette position
+     * @throws IndexOutOfBoundsException Erreur si la position est invalide
+     */
+    int departingTransferId(int position);
+
     /**
      * Fonction qui retourne la durée, en minutes, du changement entre les deux gares d'index donnés,
      * ou lève NoSuchElementException si aucun changement n'est possible entre ces deux gares.
@@ -46,4 +83,29 @@ public interface Transfers extends Indexed {
      */
     int minutesBetween(int depStationId, int arrStationId);
 
+    /**
+     * Fonction qui remplit le tableau donné avec la durée, en minutes, du changement entre chaque gare
+     * (l'index dans le tableau) et la gare d'arrivée d'index donné, ou -1 si aucun changement n'est possible
+     * entre ces deux gares. Contrairement à minutesBetween, aucune exception n'est levée pour les gares
+     * sans changement, et seuls les changements arrivant à la gare donnée sont parcourus.
+     * Si plusieurs changements relient les deux mêmes gares, c'est la durée du premier qui est retenue,
+     * comme pour minutesBetween.
+     * @param arrStationId id de la gare d'arrivée
+     * @param walkMinutes tableau à remplir, indexé par les gares de départ, qui doit contenir toutes les gares
+     * @throws IndexOutOfBoundsException Erreur si l'index de la gare ou la taille du tableau est invalide
+     */
+    default void fillMinutesTo(int arrStationId, int[] walkMinutes) {
+        int packedInterval = arrivingAt(arrStationId);
+
+        // Par défaut, aucun changement n'est possible
+        Arrays.fill(walkMinutes, -1);
+
+        // Puis on place la durée de chacun des changements arrivant à la gare donnée,
+        // sans écraser celle d'un changement précédent entre les deux mêmes gares
+        for (int i = PackedRange.startInclusive(packedInterval); i < PackedRange.endExclusive(packedInterval); i++) {
+            int depStationId = depStationId(i);
+            if (walkMinutes[depStationId] == -1) walkMinutes[depStationId] = minutes(i);
+        }
+    }
+
 }
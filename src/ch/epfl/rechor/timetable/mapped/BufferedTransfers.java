@@ -4,6 +4,7 @@ import ch.epfl.rechor.PackedRange;
 import ch.epfl.rechor.timetable.Transfers;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
@@ -31,6 +32,20 @@ public final class BufferedTransfers implements Transfers {
     // Id max de la gare donné dans le buffer
     private int maxStationId;
 
+    // Index des changements par couple de gares (table de hachage à adressage ouvert).
+    // Chaque case contient le couple (gare de départ, gare d'arrivée) sur 32 bits, suivi
+    // de la durée du changement sur 8 bits, ou EMPTY_SLOT si elle est libre
+    private static final long EMPTY_SLOT = -1L;
+    private final long[] transferIndex;
+    private final int transferIndexShift;
+
+    // Tableau contenant l'intervalle des positions des changements, dans l'ordre des gares
+    // de départ, et qui est indexé par les gares de départ
+    private final int[] depStationIdTransferInterval;
+
+    // Index des changements, triés par gare de départ puis par index
+    private final int[] transferIdsByDepStation;
+
     /**
      * Constructeur qui construit une instance donnant accès
      * aux données aplaties disponibles dans le tableau buffer.
@@ -104,6 +119,80 @@ public final class BufferedTransfers implements Transfers {
 
         }
 
+        // --------3) Index des changements par couple de gares ----------
+
+        // La capacité est une puissance de deux au moins double du nombre de changements,
+        // afin que les sondages restent courts
+        int capacity = Integer.highestOneBit(Math.max(1, transferStructuredBuffer.size()) * 2 - 1) << 1;
+        this.transferIndex = new long[capacity];
+        this.transferIndexShift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+        Arrays.fill(transferIndex, EMPTY_SLOT);
+
+        for (int i = 0; i < transferStructuredBuffer.size(); ++i) {
+            long key = stationPairKey(
+                    transferStructuredBuffer.getU16(DEP_STATION_ID, i),
+                    transferStructuredBuffer.getU16(ARR_STATION_ID, i));
+            int slot = slotOf(key);
+
+            // En cas de doublon, c'est le premier changement qui est conservé,
+            // comme lors de la recherche linéaire
+            while (transferIndex[slot] != EMPTY_SLOT && (transferIndex[slot] >>> 8) != key) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            if (transferIndex[slot] == EMPTY_SLOT) {
+                transferIndex[slot] = key << 8 | transferStructuredBuffer.getU8(TRANSFER_MINUTES, i);
+            }
+        }
+
+        // --------4) Index des changements par gare de départ (tri par dénombrement) ----------
+
+        int maxDepStationId = -1;
+        for (int i = 0; i < transferStructuredBuffer.size(); ++i) {
+            maxDepStationId = Math.max(maxDepStationId, transferStructuredBuffer.getU16(DEP_STATION_ID, i));
+        }
+
+        // nextPosition[s] est la position du premier changement partant de la gare s
+        int[] nextPosition = new int[maxDepStationId + 2];
+        for (int i = 0; i < transferStructuredBuffer.size(); ++i) {
+            nextPosition[transferStructuredBuffer.getU16(DEP_STATION_ID, i) + 1]++;
+        }
+        for (int stationId = 0; stationId <= maxDepStationId; ++stationId) {
+            nextPosition[stationId + 1] += nextPosition[stationId];
+        }
+
+        this.depStationIdTransferInterval = new int[maxDepStationId + 1];
+        for (int stationId = 0; stationId <= maxDepStationId; ++stationId) {
+            depStationIdTransferInterval[stationId] =
+                    PackedRange.pack(nextPosition[stationId], nextPosition[stationId + 1]);
+        }
+
+        // On place chaque changement à la prochaine position libre de sa gare de départ,
+        // dans l'ordre des index, ce qui rend le tri stable
+        this.transferIdsByDepStation = new int[transferStructuredBuffer.size()];
+        for (int i = 0; i < transferStructuredBuffer.size(); ++i) {
+            transferIdsByDepStation[nextPosition[transferStructuredBuffer.getU16(DEP_STATION_ID, i)]++] = i;
+        }
+    }
+
+    /**
+     * Fonction qui retourne la clé de l'index des changements correspondant au couple de gares donné
+     * @param depStationId id de la gare de départ
+     * @param arrStationId id de la gare d'arrivée
+     * @return la clé, positive, du couple de gares
+     */
+    private static long stationPairKey(int depStationId, int arrStationId) {
+        // Les index de gare tiennent sur 16 bits
+        return (long) depStationId << 16 | arrStationId;
+    }
+
+    /**
+     * Fonction qui retourne la case de l'index des changements où commence la recherche de la clé donnée
+     * @param key clé d'un couple de gares
+     * @return l'index de la première case à sonder
+     */
+    private int slotOf(long key) {
+        // Hachage multiplicatif de Fibonacci, qui répartit bien des clés consécutives
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> transferIndexShift);
     }
 
 
@@ -150,6 +239,38 @@ public final class BufferedTransfers implements Transfers {
         return this.stationIdTransferInterval[stationId];
     }
 
+    /**
+     * Fonction qui retourne l'intervalle empaqueté des positions, dans l'ordre des gares de départ,
+     * des changements dont la gare de départ est celle d'index donné
+     *
+     * @param stationId index de la gare de départ
+     * @return int représentant un intervalle empaqueté des positions des changements partant de la gare donnée
+     * @throws IndexOutOfBoundsException Erreur si l'index est invalide
+     */
+    @Override
+    public int departingFrom(int stationId) {
+
+        // Une gare valide dont aucun changement ne part a un intervalle vide,
+        // comme pour arrivingAt
+        if (stationId >= depStationIdTransferInterval.length && stationId <= maxStationId) return 0;
+        return depStationIdTransferInterval[stationId];
+    }
+
+    /**
+     * Fonction qui retourne l'index du changement se trouvant à la position donnée lorsque
+     * les changements sont triés par gare de départ
+     *
+     * @param position position dans l'ordre des gares de départ
+     * @return l'index du changement se trouvant à cette position
+     * @throws IndexOutOfBoundsException Erreur si la position est invalide
+     */
+    @Override
+    public int departingTransferId(int position) {
+
+        // Le tableau a été calculé dans le constructeur
+        return transferIdsByDepStation[position];
+    }
+
     /**
      * Fonction qui retourne la durée, en minutes, du changement entre les deux gares d'index donnés,
      * ou lève NoSuchElementException si aucun changement n'est possible entre ces deux gares.
@@ -168,23 +289,12 @@ public final class BufferedTransfers implements Transfers {
             throw new IndexOutOfBoundsException("Index invalide");
         }
 
-        // On récupère l'intervalle empaqueté des changements arrivant à la gare d'arrivée
-        int packedInterval = arrivingAt(arrStationId);
-
-        int start = PackedRange.startInclusive(packedInterval);
-        int end = PackedRange.endExclusive(packedInterval);
-
-        if (start == end) {
-            // Cela signifie que l'intervalle est vide,
-            // il n'y a donc aucun changement possible entre ces deux gares
-            throw new NoSuchElementException("aucun changement possible entre ces deux gares");
-        }
-
-        // On itère sur l'intervalle pour trouver le changement correspondant
-        for (int i = start; i < end; i++) {
-            if (depStationId == transferStructuredBuffer.getU16(DEP_STATION_ID, i)){
+        // On cherche le couple de gares dans l'index, en temps constant
+        long key = stationPairKey(depStationId, arrStationId);
+        for (int slot = slotOf(key); transferIndex[slot] != EMPTY_SLOT; slot = (slot + 1) & (transferIndex.length - 1)) {
+            if ((transferIndex[slot] >>> 8) == key) {
                 // Si on a trouvé le changement correspondant, on retourne sa durée
-                return transferStructuredBuffer.getU8(TRANSFER_MINUTES, i);
+                return (int) (transferIndex[slot] & 0xFF);
             }
         }
 
@@ -5,16 +5,22 @@ import ch.epfl.rechor.timetable.*;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
+import java.util.HexFormat;
 import java.util.List;
 
 /**
- * Représente un horaire de transport public dont les données (aplaties) sont stockées dans des fichiers
+ * Représente un horaire de transport public dont les données (aplaties) sont stockées dans des fichiers.
+ * La table (immuable) des gares des arrêts, qui ne dépend que des gares et des voies ou quais,
+ * est construite une seule fois, avec l'horaire
  *  @author Yoann Salamin (390522)
  *  @author Axel Verga (398787)
  */
@@ -24,9 +30,27 @@ public record FileTimeTable(Path directory,
                             StationAliases stationAliases,
                             Platforms platforms,
                             Routes routes,
-                            Transfers transfers)
+                            Transfers transfers,
+                            StopStations stopStations)
         implements TimeTable {
 
+    /**
+     * Constructeur qui construit un horaire à partir des données données, et construit sa table
+     * des gares des arrêts
+     * @param directory le répertoire contenant les fichiers de l'horaire
+     * @param stringTable la table des chaînes
+     * @param stations les gares
+     * @param stationAliases les noms alternatifs des gares
+     * @param platforms les voies/quais
+     * @param routes les lignes
+     * @param transfers les changements
+     */
+    public FileTimeTable(Path directory, List<String> stringTable, Stations stations,
+                         StationAliases stationAliases, Platforms platforms, Routes routes, Transfers transfers) {
+        this(directory, stringTable, stations, stationAliases, platforms, routes, transfers,
+                new StopStations(stations, platforms));
+    }
+
 
     /**
      * Charge et mappe en mémoire un fichier binaire en lecture seule.
@@ -43,6 +67,9 @@ public record FileTimeTable(Path directory,
     }
 
 
+    // Noms des fichiers des données d'un jour
+    private static final List<String> DAY_FILE_NAMES = List.of("trips.bin", "connections.bin", "connections-succ.bin");
+
     /**
      * Méthode qui retourne une nouvelle instance de FileTimeTable dont les données aplaties
      * ont été obtenues à partir des fichiers se trouvant dans le dossier dont le chemin d'accès est donné
@@ -124,6 +151,16 @@ public record FileTimeTable(Path directory,
         return transfers;
     }
 
+    /**
+     * Fonction qui retourne la table des gares des arrêts, construite avec l'horaire
+     *
+     * @return la table des gares des arrêts
+     */
+    @Override
+    public StopStations stopStations() {
+        return stopStations;
+    }
+
     /**
      * Fonction qui retourne les courses indexées de l'horaire actives le jour donné
      *
@@ -163,4 +200,55 @@ public record FileTimeTable(Path directory,
             throw new UncheckedIOException(e);
         }
     }
+
+    /**
+     * Fonction qui projette en mémoire les fichiers des données du jour donné et charge leurs pages
+     * en mémoire physique, afin que leur prochaine projection, par tripsFor ou connectionsFor,
+     * ne provoque plus de lecture du disque
+     * @param date une date qui représente un jour entier
+     * @throws UncheckedIOException en cas d'erreur d'accès à l'un des fichiers
+     */
+    @Override
+    public void warmUp(LocalDate date) {
+        Path dayDirectory = directory.resolve(date.toString());
+        try {
+            for (String fileName : DAY_FILE_NAMES) loadMappedBuffer(dayDirectory, fileName).load();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Fonction qui retourne l'empreinte (SHA-256, en hexadécimal) des fichiers des données du jour donné,
+     * calculée à chaque appel (CachedTimeTable la mémorise) : deux jours dont les fichiers sont identiques
+     * octet pour octet ont la même empreinte
+     * @param date une date qui représente un jour entier
+     * @return l'empreinte des fichiers du jour
+     * @throws UncheckedIOException en cas d'erreur d'accès à l'un des fichiers
+     */
+    @Override
+    public String dayContentKey(LocalDate date) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Toute plateforme Java doit fournir SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        Path dayDirectory = directory.resolve(date.toString());
+        try {
+            for (String fileName : DAY_FILE_NAMES) {
+                MappedByteBuffer buffer = loadMappedBuffer(dayDirectory, fileName);
+
+                // La taille de chaque fichier précède son contenu, afin que des fichiers dont seule
+                // la concaténation est identique ne puissent pas être confondus
+                digest.update(ByteBuffer.allocate(Long.BYTES).putLong(0, buffer.capacity()));
+                digest.update(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 }
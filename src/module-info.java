@@ -2,6 +2,8 @@ module ReCHor {
     requires javafx.controls;
     requires java.desktop;
     requires java.net.http;
+    requires java.management;
+    requires static jdk.incubator.vector;
 
     exports ch.epfl.rechor;
     exports ch.epfl.rechor.gui;
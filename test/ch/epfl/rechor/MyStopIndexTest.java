@@ -5,9 +5,16 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList; // Import pour trier
+import java.util.Arrays;
 import java.util.Collections; // Import pour trier
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -117,4 +124,89 @@ class MyStopIndexTest {
         // Pour l'instant, on vérifie juste qu'il ne crashe pas.
     }
 
+    // --- Tests de l'index des n-grammes ---
+
+    @Test
+    void stopsMatchingGivesSameRankingAsFullScan() {
+        Random rng = new Random(2025);
+        String[] syllables = {"la", "Lau", "sanne", "mé", "zi", "ères", "Gen", "ève", "ç", "Cha", "rle", "vil",
+                "le", "ô", "st", "ür", "ich", "BE", "RN", "é", "ï", "-", ", ", " ", "ſt", "İ", "K"};
+        List<String> stops = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) stops.add(randomName(rng, syllables));
+        Map<String, String> aliases = new HashMap<>();
+        for (int i = 0; i < 300; i++) aliases.put(randomName(rng, syllables), stops.get(rng.nextInt(stops.size())));
+        // Même instance (et donc même ordre de parcours) pour l'index et pour la recherche sans index
+        Map<String, String> copiedAliases = Map.copyOf(aliases);
+        StopIndex index = new StopIndex(stops, copiedAliases);
+
+        List<String> queries = new ArrayList<>(List.of("", " ", "a", "e", "LA", "mez vil", "ST", "st", "ſt",
+                "i", "I", "k", "zz", "é", "ï Lau", "Mé", "-", "ech ri", "sanne ère"));
+        for (int i = 0; i < 300; i++) {
+            String name = stops.get(rng.nextInt(stops.size()));
+            int start = rng.nextInt(name.length());
+            String query = name.substring(start, Math.min(name.length(), start + 1 + rng.nextInt(8)));
+            queries.add(rng.nextBoolean() ? query.toLowerCase() : query);
+        }
+
+        for (String query : queries) {
+            for (int max : new int[]{1, 5, 30}) {
+                assertEquals(fullScanStopsMatching(stops, copiedAliases, query, max),
+                        index.stopsMatching(query, max), "requête : \"" + query + "\"");
+            }
+        }
+    }
+
+    private static String randomName(Random rng, String[] syllables) {
+        StringBuilder name = new StringBuilder(syllables[rng.nextInt(3)]);
+        for (int i = 0, n = 1 + rng.nextInt(5); i < n; i++) name.append(syllables[rng.nextInt(syllables.length)]);
+        return name.toString();
+    }
+
+    // Recherche sans index, telle qu'elle était faite avant l'ajout de l'index des n-grammes
+    private static List<String> fullScanStopsMatching(List<String> stops, Map<String, String> aliases,
+                                                      String rqt, int max) {
+        Map<Character, String> equivalences = Map.of('a', "[aáàâä]", 'c', "[cç]", 'e', "[eéèêë]",
+                'i', "[iíìîï]", 'o', "[oóòôö]", 'u', "[uúùûü]");
+        List<Pattern> patterns = Arrays.stream(rqt.split(" "))
+                .filter(subQuery -> !subQuery.isEmpty())
+                .map(subQuery -> {
+                    int flags = subQuery.equals(subQuery.toLowerCase())
+                            ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
+                            : Pattern.UNICODE_CASE;
+                    String re = subQuery.chars()
+                            .mapToObj(c -> equivalences.getOrDefault((char) c, Pattern.quote(String.valueOf((char) c))))
+                            .collect(Collectors.joining());
+                    return Pattern.compile(re, flags);
+                })
+                .toList();
+
+        Stream<String> names = Stream.concat(stops.stream(),
+                aliases.entrySet().stream().map(Map.Entry::getKey));
+        return names
+                .filter(name -> patterns.stream().allMatch(p -> p.matcher(name).find()))
+                .distinct()
+                .sorted((n1, n2) -> Integer.compare(fullScanScore(n2, patterns), fullScanScore(n1, patterns)))
+                .map(name -> aliases.getOrDefault(name, name))
+                .distinct()
+                .limit(max)
+                .collect(Collectors.toList());
+    }
+
+    private static int fullScanScore(String name, List<Pattern> patterns) {
+        int score = 0;
+        for (Pattern pattern : patterns) {
+            Matcher matcher = pattern.matcher(name);
+            if (matcher.find()) {
+                int multiplier = 1;
+                if (matcher.start() == 0 || !Character.isLetter(name.charAt(matcher.start() - 1)))
+                    multiplier *= StopIndex.BEGIN_OR_SPACE_MULTIPLIER;
+                if (matcher.end() == name.length() || !Character.isLetter(name.charAt(matcher.end())))
+                    multiplier *= StopIndex.END_OR_SPACE_MULTIPLIER;
+                score += (int) Math.floor(100 * ((double) (matcher.end() - matcher.start()) / name.length()))
+                        * multiplier;
+            }
+        }
+        return score;
+    }
+
 }
\ No newline at end of file
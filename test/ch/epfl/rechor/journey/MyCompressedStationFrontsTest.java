@@ -0,0 +1,122 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.CachedTimeTable;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.mapped.FileTimeTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyCompressedStationFrontsTest {
+
+    @Test
+    void compressionPreservesTuplesAndOrder() {
+        Random rng = new Random(2025);
+        for (int round = 0; round < 200; round++) {
+            List<ParetoFront> fronts = new ArrayList<>();
+            for (int stationId = 0; stationId < 50; stationId++) {
+                boolean withDepMins = rng.nextBoolean();
+                ParetoFront.Builder builder = new ParetoFront.Builder();
+                int size = rng.nextInt(4) == 0 ? 0 : rng.nextInt(60);
+                for (int i = 0; i < size; i++) {
+                    // Heures extrêmes et charges utiles quelconques (y compris négatives)
+                    long tuple = PackedCriteria.pack(-240 + rng.nextInt(3_000), rng.nextInt(128), rng.nextInt());
+                    if (withDepMins) tuple = PackedCriteria.withDepMins(tuple, -240 + rng.nextInt(3_000));
+                    builder.add(tuple);
+                }
+                fronts.add(builder.build());
+            }
+
+            List<ParetoFront> compressed = CompressedStationFronts.of(fronts);
+            assertEquals(fronts.size(), compressed.size());
+            for (int stationId = 0; stationId < fronts.size(); stationId++)
+                assertEquals(tuples(fronts.get(stationId)), tuples(compressed.get(stationId)));
+        }
+    }
+
+    @Test
+    void compressedProfileGivesSameJourneys() {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(3, 60, 800, 0, 0);
+        Router router = new Router(timeTable);
+
+        for (int arrStationId = 0; arrStationId < 30; arrStationId += 4) {
+            Profile profile = router.profile(date, arrStationId);
+            Profile compressed = profile.compressed();
+            assertSame(compressed, compressed.compressed());
+            assertSame(compressed.stationFront(), new Profile(timeTable, date, arrStationId,
+                    compressed.stationFront()).stationFront());
+            assertThrows(UnsupportedOperationException.class,
+                    () -> compressed.stationFront().add(ParetoFront.EMPTY));
+            assertThrows(IndexOutOfBoundsException.class, () -> compressed.forStation(-1));
+
+            for (int depStationId = 0; depStationId < 30; depStationId += 3) {
+                assertEquals(tuples(profile.forStation(depStationId)), tuples(compressed.forStation(depStationId)));
+                assertEquals(
+                        JourneyExtractor.journeys(profile, depStationId),
+                        JourneyExtractor.journeys(compressed, depStationId));
+            }
+        }
+    }
+
+    @Test
+    void compressionRatioAndDecodeCost() throws IOException {
+        // Mesure sur l'horaire réel s'il est disponible, sinon sur un horaire synthétique
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        Path directory = Path.of("timetable");
+        boolean real = Files.isDirectory(directory);
+        TimeTable timeTable = real
+                ? new CachedTimeTable(FileTimeTable.in(directory))
+                : MyRouterTest.SyntheticTimeTable.generate(5, 200, 6_000, 0, 0);
+        Router router = new Router(timeTable);
+        int stationsCount = timeTable.stations().size();
+
+        long tuplesCount = 0, compactBytes = 0, compressedBytes = 0;
+        List<Profile> compressedProfiles = new ArrayList<>();
+        for (int arrStationId = 0; arrStationId < stationsCount; arrStationId += Math.max(1, stationsCount / 8)) {
+            Profile profile = router.profile(date, arrStationId);
+            Profile compressed = profile.compressed();
+            for (int stationId = 0; stationId < stationsCount; stationId++)
+                tuplesCount += profile.forStation(stationId).size();
+
+            // Forme compacte : 8 octets par tuple et un index par gare ; forme compressée : ses octets et un index
+            compactBytes = 8 * tuplesCount + 4L * (stationsCount + 1) * (compressedProfiles.size() + 1);
+            compressedBytes += ((CompressedStationFronts) compressed.stationFront()).byteSize() + 4L * stationsCount;
+            compressedProfiles.add(compressed);
+        }
+
+        // Coût du décodage de toutes les frontières (préchauffage, puis meilleure de cinq mesures)
+        long checksum = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 8; round++) {
+            long start = System.nanoTime();
+            for (Profile compressed : compressedProfiles)
+                for (int stationId = 0; stationId < stationsCount; stationId++)
+                    checksum += compressed.forStation(stationId).size();
+            if (round >= 3) best = Math.min(best, System.nanoTime() - start);
+        }
+        assertEquals(tuplesCount * 8, checksum);
+
+        System.out.printf("Horaire %s : %d profils, %d tuples, %.2f octets par tuple compressé, "
+                        + "taux de compression %.2f, décodage %.1f ns par tuple%n",
+                real ? "réel" : "synthétique", compressedProfiles.size(), tuplesCount,
+                (double) (compressedBytes - 4L * stationsCount * compressedProfiles.size()) / tuplesCount,
+                (double) compactBytes / compressedBytes, (double) best / tuplesCount);
+        assertTrue(compressedBytes < compactBytes);
+    }
+
+    private static List<Long> tuples(ParetoFront front) {
+        List<Long> tuples = new ArrayList<>();
+        front.forEach(tuples::add);
+        return tuples;
+    }
+}
@@ -0,0 +1,138 @@
+package ch.epfl.rechor.journey;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyDominanceTest {
+
+    private static final boolean VECTOR_MODULE_PRESENT =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    @Test
+    void scalarKernelMatchesPackedCriteria() {
+        Random rng = new Random(2025);
+        for (int round = 0; round < 20_000; round++) {
+            long[] tuples = randomTuples(rng, rng.nextInt(40), true);
+            long candidate = randomTuple(rng, true);
+            int from = tuples.length == 0 ? 0 : rng.nextInt(tuples.length);
+            assertEquals(
+                    naiveAnyDominatesOrIsEqual(tuples, from, tuples.length, candidate),
+                    Dominance.scalarAnyDominatesOrIsEqual(tuples, from, tuples.length, candidate));
+        }
+    }
+
+    @Test
+    void scalarKernelWorksWithoutDepMins() {
+        long[] tuples = {PackedCriteria.pack(480, 2, 0), PackedCriteria.pack(490, 1, 0)};
+        assertTrue(Dominance.scalarAnyDominatesOrIsEqual(tuples, 0, 2, PackedCriteria.pack(485, 2, 7)));
+        assertFalse(Dominance.scalarAnyDominatesOrIsEqual(tuples, 0, 2, PackedCriteria.pack(485, 1, 7)));
+    }
+
+    @Test
+    void scalarKernelThrowsOnMixedDepMins() {
+        long[] tuples = {PackedCriteria.pack(480, 2, 0)};
+        long candidate = PackedCriteria.withDepMins(PackedCriteria.pack(485, 2, 0), 470);
+        assertThrows(IllegalArgumentException.class,
+                () -> Dominance.scalarAnyDominatesOrIsEqual(tuples, 0, 1, candidate));
+    }
+
+    @Test
+    void vectorKernelMatchesScalarKernel() {
+        if (!VECTOR_MODULE_PRESENT) return;
+
+        Random rng = new Random(7);
+        for (int round = 0; round < 20_000; round++) {
+            boolean withDepMins = round % 3 != 0;
+            long[] tuples = randomTuples(rng, rng.nextInt(70), withDepMins);
+            long candidate = randomTuple(rng, withDepMins);
+            int from = tuples.length == 0 ? 0 : rng.nextInt(tuples.length);
+            assertEquals(
+                    Dominance.scalarAnyDominatesOrIsEqual(tuples, from, tuples.length, candidate),
+                    VectorDominance.anyDominatesOrIsEqual(tuples, from, tuples.length, candidate));
+        }
+    }
+
+    @Test
+    void dominanceKernelsBenchmark() {
+        // Tailles de frontières réalistes : celles des gares de profils calculés sur un réseau synthétique
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(11, 120, 3_000, 0, 0);
+        Router router = new Router(timeTable);
+        List<Integer> sizes = new ArrayList<>();
+        for (int arrStationId = 0; arrStationId < 120; arrStationId += 10) {
+            Profile profile = router.profile(date, arrStationId);
+            for (int stationId = 0; stationId < timeTable.stations().size(); stationId++) {
+                int size = profile.forStation(stationId).size();
+                if (size > 0) sizes.add(size);
+            }
+        }
+        sizes.sort(Integer::compare);
+        int[] percentiles = {50, 90, 99, 100};
+
+        Random rng = new Random(1);
+        System.out.printf("Noyau vectoriel %s%n", VECTOR_MODULE_PRESENT ? "disponible" : "indisponible");
+        for (int percentile : percentiles) {
+            int size = sizes.get(Math.min(sizes.size() - 1, sizes.size() * percentile / 100));
+
+            // Le pire cas est celui où aucun tuple ne domine le candidat, ce qui oblige à tous les comparer
+            long[] tuples = new long[size];
+            for (int i = 0; i < size; i++)
+                tuples[i] = PackedCriteria.withDepMins(PackedCriteria.pack(600 + i, 0, i), 480);
+            long candidate = PackedCriteria.withDepMins(PackedCriteria.pack(599, 0, 0), 480);
+
+            double scalarNanos = nanosPerCall(() -> Dominance.scalarAnyDominatesOrIsEqual(tuples, 0, size, candidate));
+            String vector = VECTOR_MODULE_PRESENT
+                    ? String.format("%.1f ns", nanosPerCall(
+                            () -> VectorDominance.anyDominatesOrIsEqual(tuples, 0, size, candidate)))
+                    : "-";
+            System.out.printf("p%d : %d tuples, scalaire %.1f ns, vectoriel %s%n",
+                    percentile, size, scalarNanos, vector);
+            assertFalse(Dominance.scalarAnyDominatesOrIsEqual(tuples, 0, size, candidate));
+        }
+    }
+
+    private interface Kernel {
+        boolean run();
+    }
+
+    private static double nanosPerCall(Kernel kernel) {
+        int calls = 200_000;
+        int dominated = 0;
+
+        // Préchauffage, pour que la mesure ne dépende pas de la compilation JIT
+        for (int i = 0; i < calls; i++) if (kernel.run()) dominated++;
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) if (kernel.run()) dominated++;
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        assertEquals(0, dominated);
+        return (double) best / calls;
+    }
+
+    private static boolean naiveAnyDominatesOrIsEqual(long[] tuples, int from, int to, long candidate) {
+        for (int i = from; i < to; i++)
+            if (PackedCriteria.dominatesOrIsEqual(tuples[i], candidate)) return true;
+        return false;
+    }
+
+    private static long randomTuple(Random rng, boolean withDepMins) {
+        long tuple = PackedCriteria.pack(480 + rng.nextInt(60), rng.nextInt(5), rng.nextInt());
+        return withDepMins ? PackedCriteria.withDepMins(tuple, 460 + rng.nextInt(40)) : tuple;
+    }
+
+    private static long[] randomTuples(Random rng, int count, boolean withDepMins) {
+        long[] tuples = new long[count];
+        for (int i = 0; i < count; i++) tuples[i] = randomTuple(rng, withDepMins);
+        return tuples;
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -699,4 +700,153 @@ class MyParetoFrontTest {
 
     }
 
+    // ==========================================================================
+    // SECTION : Comparaison avec des implémentations naïves (ajouts successifs, boucles imbriquées)
+    // ==========================================================================
+
+    @Test
+    void addAllGivesSameFrontAsSuccessiveAdds() {
+        Random rng = new Random(2025);
+        for (int round = 0; round < 2_000; round++) {
+            boolean withDepMins = round % 2 == 0;
+            ParetoFront.Builder b1 = randomBuilder(rng, withDepMins);
+            ParetoFront.Builder b2 = randomBuilder(rng, withDepMins);
+
+            ParetoFront.Builder expected = new ParetoFront.Builder(b1);
+            b2.forEach(expected::add);
+            ParetoFront.Builder actual = new ParetoFront.Builder(b1).addAll(b2);
+
+            assertEquals(tuples(expected), tuples(actual));
+        }
+    }
+
+    @Test
+    void addAllWithItselfChangesNothing() {
+        ParetoFront.Builder builder = randomBuilder(new Random(1), true);
+        List<Long> before = tuples(builder);
+        assertEquals(before, tuples(builder.addAll(builder)));
+    }
+
+    @Test
+    void addKeepsFrontSortedAndMinimal() {
+        Random rng = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            ParetoFront.Builder builder = new ParetoFront.Builder();
+            List<Long> added = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                long tuple = randomTuple(rng, true);
+                added.add(tuple);
+                builder.add(tuple);
+            }
+
+            // Un tuple ajouté est dans la frontière si et seulement si aucun autre, ajouté avant lui
+            // avec les mêmes critères ou le dominant strictement, n'a été ajouté
+            List<Long> expected = new ArrayList<>();
+            for (int i = 0; i < added.size(); i++) {
+                long tuple = added.get(i);
+                boolean beaten = false;
+                for (int j = 0; j < added.size() && !beaten; j++) {
+                    long other = added.get(j);
+                    boolean sameCriteria = (other >>> 32) == (tuple >>> 32);
+                    beaten = sameCriteria ? j < i : PackedCriteria.dominatesOrIsEqual(other, tuple);
+                }
+                if (!beaten) expected.add(tuple);
+            }
+            expected.sort(Long::compare);
+            assertEquals(expected, tuples(builder));
+        }
+    }
+
+    @Test
+    void fullyDominatesMatchesNestedLoops() {
+        Random rng = new Random(42);
+        int dominated = 0;
+        for (int round = 0; round < 5_000; round++) {
+            ParetoFront.Builder b1 = randomBuilder(rng, true);
+            ParetoFront.Builder b2 = new ParetoFront.Builder();
+            int size = rng.nextInt(4);
+            for (int i = 0; i < size; i++) b2.add(randomTuple(rng, true));
+            int depMins = 480 + rng.nextInt(60);
+
+            boolean expected = true;
+            for (long t : tuples(b2)) {
+                long modified = PackedCriteria.withDepMins(t, depMins);
+                boolean hasBeenDominated = false;
+                for (long u : tuples(b1)) hasBeenDominated |= PackedCriteria.dominatesOrIsEqual(u, modified);
+                expected &= hasBeenDominated;
+            }
+            assertEquals(expected, b1.fullyDominates(b2, depMins));
+            if (expected) dominated++;
+        }
+        assertTrue(dominated > 100);
+    }
+
+    @Test
+    void slabBuildersBehaveLikeIndependentBuilders() {
+        // De nombreux bâtisseurs de la même arène, modifiés dans le désordre, ce qui force
+        // les tranches à être déplacées et le tableau partagé à être agrandi plusieurs fois
+        Random rng = new Random(10);
+        ParetoFront.Slab slab = new ParetoFront.Slab();
+        int count = 300;
+        ParetoFront.Builder[] slabBuilders = new ParetoFront.Builder[count];
+        ParetoFront.Builder[] expected = new ParetoFront.Builder[count];
+        for (int i = 0; i < count; i++) {
+            slabBuilders[i] = slab.newBuilder();
+            expected[i] = new ParetoFront.Builder();
+        }
+
+        for (int step = 0; step < 100_000; step++) {
+            int i = rng.nextInt(count);
+            switch (rng.nextInt(10)) {
+                case 0 -> {
+                    int j = rng.nextInt(count);
+                    slabBuilders[i].addAll(slabBuilders[j]);
+                    expected[i].addAll(expected[j]);
+                }
+                case 1 -> {
+                    ParetoFront.Builder other = randomBuilder(rng, true);
+                    slabBuilders[i].addAll(other);
+                    expected[i].addAll(other);
+                }
+                case 2 -> {
+                    int depMins = 470 + rng.nextInt(70);
+                    slabBuilders[i].removeDepartingBefore(depMins);
+                    expected[i].removeDepartingBefore(depMins);
+                }
+                default -> {
+                    long tuple = randomTuple(rng, true);
+                    slabBuilders[i].add(tuple);
+                    expected[i].add(tuple);
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(tuples(expected[i]), tuples(slabBuilders[i]));
+            assertEquals(tuples(expected[i]), tuples(new ParetoFront.Builder(slabBuilders[i])));
+            assertEquals(expected[i].build().toString(), slabBuilders[i].build().toString());
+            int depMins = 470 + rng.nextInt(70);
+            assertEquals(expected[0].fullyDominates(expected[i], depMins),
+                    slabBuilders[0].fullyDominates(slabBuilders[i], depMins));
+        }
+    }
+
+    private static long randomTuple(Random rng, boolean withDepMins) {
+        long tuple = PackedCriteria.pack(480 + rng.nextInt(90), rng.nextInt(6), rng.nextInt(1000));
+        return withDepMins ? PackedCriteria.withDepMins(tuple, 470 + rng.nextInt(70)) : tuple;
+    }
+
+    private static ParetoFront.Builder randomBuilder(Random rng, boolean withDepMins) {
+        ParetoFront.Builder builder = new ParetoFront.Builder();
+        int size = rng.nextInt(40);
+        for (int i = 0; i < size; i++) builder.add(randomTuple(rng, withDepMins));
+        return builder;
+    }
+
+    private static List<Long> tuples(ParetoFront.Builder builder) {
+        List<Long> tuples = new ArrayList<>();
+        builder.forEach(tuples::add);
+        return tuples;
+    }
+
 }
@@ -0,0 +1,141 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyPrecomputeJobTest {
+
+    private static final LocalDate FIRST_DATE = LocalDate.of(2025, Month.APRIL, 1);
+    private static final LocalDate LAST_DATE = FIRST_DATE.plusDays(1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void runStoresAllProfilesOfAllDays() throws IOException, InterruptedException {
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(3, 30, 300, 0, 0);
+        ProfileStore store = new ProfileStore(directory, "v1");
+        List<PrecomputeJob.Report> progress = new ArrayList<>();
+
+        PrecomputeJob.Report report = new PrecomputeJob(timeTable, store, 4, 1L << 30)
+                .run(FIRST_DATE, LAST_DATE, progress::add);
+        assertEquals(60, report.computedProfiles());
+        assertEquals(0, report.skippedProfiles());
+        assertTrue(report.threads() >= 1 && report.threads() <= 4);
+        assertTrue(report.profilesPerSecond() > 0);
+        assertEquals(List.of(30, 60), progress.stream().map(PrecomputeJob.Report::computedProfiles).toList());
+
+        Router router = new Router(timeTable);
+        for (LocalDate date = FIRST_DATE; !date.isAfter(LAST_DATE); date = date.plusDays(1)) {
+            for (int arrStationId = 0; arrStationId < 30; arrStationId += 7) {
+                Profile expected = router.profile(date, arrStationId);
+                Profile loaded = store.load(timeTable, date, arrStationId).orElseThrow();
+                for (int stationId = 0; stationId < 30; stationId++)
+                    assertEquals(tuples(expected.forStation(stationId)), tuples(loaded.forStation(stationId)));
+            }
+        }
+    }
+
+    @Test
+    void runResumesFromStoredProfiles() throws IOException, InterruptedException {
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(1, 20, 100, 0, 0);
+        ProfileStore store = new ProfileStore(directory, "v1");
+        PrecomputeJob job = new PrecomputeJob(timeTable, store, 2, 1L << 30);
+        job.run(FIRST_DATE, LAST_DATE, r -> {});
+
+        // Une seconde exécution ne recalcule rien
+        PrecomputeJob.Report again = job.run(FIRST_DATE, LAST_DATE, r -> {});
+        assertEquals(0, again.computedProfiles());
+        assertEquals(40, again.skippedProfiles());
+        assertEquals(0, again.threads());
+
+        // Après une interruption, seuls les profils manquants sont calculés
+        Files.delete(store.pathFor(LAST_DATE, 4));
+        Files.delete(store.pathFor(LAST_DATE, 11));
+        long modified = Files.getLastModifiedTime(store.pathFor(LAST_DATE, 5)).toMillis();
+        PrecomputeJob.Report resumed = job.run(FIRST_DATE, LAST_DATE, r -> {});
+        assertEquals(2, resumed.computedProfiles());
+        assertEquals(38, resumed.skippedProfiles());
+        assertTrue(store.contains(LAST_DATE, 4) && store.contains(LAST_DATE, 11));
+        assertEquals(modified, Files.getLastModifiedTime(store.pathFor(LAST_DATE, 5)).toMillis());
+    }
+
+    @Test
+    void smallMemoryBudgetLimitsThreads() throws IOException, InterruptedException {
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(1, 20, 100, 0, 0);
+        PrecomputeJob.Report report = new PrecomputeJob(timeTable, new ProfileStore(directory, "v1"), 8, 1)
+                .run(FIRST_DATE, FIRST_DATE, r -> {});
+        assertEquals(1, report.threads());
+        assertEquals(20, report.computedProfiles());
+    }
+
+    @Test
+    void runReusesProfilesOfDaysWithSameContent() throws IOException, InterruptedException {
+        MyRouterTest.SyntheticTimeTable synthetic = MyRouterTest.SyntheticTimeTable.generate(2, 20, 100, 0, 0);
+        ProfileStore store = new ProfileStore(directory, "v1");
+
+        AtomicInteger contentKeyComputations = new AtomicInteger();
+        PrecomputeJob.Report report = new PrecomputeJob(
+                new SameContentTimeTable(synthetic, contentKeyComputations), store, 2, 1L << 30)
+                .run(FIRST_DATE, FIRST_DATE.plusDays(2), r -> {});
+        assertEquals(20, report.computedProfiles());
+        assertEquals(40, report.reusedProfiles());
+
+        // La clé de contenu de chaque jour n'est calculée qu'une fois, malgré le chargement de ses données
+        assertEquals(3, contentKeyComputations.get());
+
+        Router router = new Router(synthetic);
+        for (int arrStationId = 0; arrStationId < 20; arrStationId += 3) {
+            Profile expected = router.profile(FIRST_DATE.plusDays(2), arrStationId);
+            Profile loaded = store.load(synthetic, FIRST_DATE.plusDays(2), arrStationId).orElseThrow();
+            assertEquals(FIRST_DATE.plusDays(2), loaded.date());
+            for (int stationId = 0; stationId < 20; stationId++)
+                assertEquals(tuples(expected.forStation(stationId)), tuples(loaded.forStation(stationId)));
+        }
+    }
+
+    @Test
+    void constructorAndRunThrowOnInvalidArguments() {
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(1, 10, 10, 0, 0);
+        ProfileStore store = new ProfileStore(directory, "v1");
+        assertThrows(IllegalArgumentException.class, () -> new PrecomputeJob(timeTable, store, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new PrecomputeJob(timeTable, store, 1, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PrecomputeJob(timeTable, store, 1, 1).run(LAST_DATE, FIRST_DATE, r -> {}));
+    }
+
+    // Horaire qui délègue tout à l'horaire synthétique, dont tous les jours ont le même contenu,
+    // et qui compte les calculs de clés de contenu
+    private record SameContentTimeTable(TimeTable timeTable, AtomicInteger contentKeyComputations)
+            implements TimeTable {
+        @Override public Stations stations() { return timeTable.stations(); }
+        @Override public StationAliases stationAliases() { return timeTable.stationAliases(); }
+        @Override public Platforms platforms() { return timeTable.platforms(); }
+        @Override public Routes routes() { return timeTable.routes(); }
+        @Override public Transfers transfers() { return timeTable.transfers(); }
+        @Override public Trips tripsFor(LocalDate date) { return timeTable.tripsFor(date); }
+        @Override public Connections connectionsFor(LocalDate date) { return timeTable.connectionsFor(date); }
+        @Override public String dayContentKey(LocalDate date) {
+            contentKeyComputations.incrementAndGet();
+            return "tous-les-jours";
+        }
+    }
+
+    private static List<Long> tuples(ParetoFront front) {
+        List<Long> tuples = new ArrayList<>();
+        front.forEach(tuples::add);
+        return tuples;
+    }
+}
@@ -0,0 +1,256 @@
+package ch.epfl.rechor.journey;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyProfileCacheTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, Month.APRIL, 1);
+    private static final MyRouterTest.SyntheticTimeTable TIME_TABLE =
+            MyRouterTest.SyntheticTimeTable.generate(1, 20, 200, 0, 0);
+
+    // Profil ordinaire de 10 frontières de 3 tuples chacune
+    private static Profile plainProfile(int arrStationId) {
+        ParetoFront.Builder builder = new ParetoFront.Builder()
+                .add(480, 0, 0).add(470, 1, 0).add(460, 2, 0);
+        return new Profile(TIME_TABLE, DATE, arrStationId, Collections.nCopies(10, builder.build()));
+    }
+
+    @Test
+    void estimatedBytesDependsOnRepresentation() {
+        long plain = ProfileCache.estimatedBytes(plainProfile(0));
+        assertEquals(plain - 10 * 3 * Long.BYTES,
+                ProfileCache.estimatedBytes(new Profile(TIME_TABLE, DATE, 0,
+                        Collections.nCopies(10, ParetoFront.EMPTY))));
+
+        Profile profile = new Router(TIME_TABLE).profile(DATE, 3);
+        long compact = ProfileCache.estimatedBytes(profile);
+        long compressed = ProfileCache.estimatedBytes(profile.compressed());
+        assertTrue(compact > compressed);
+        assertTrue(compressed > ProfileCache.estimatedBytes(new Profile(TIME_TABLE, DATE, 3, Collections.nCopies(20,
+                ParetoFront.EMPTY)).compressed()));
+    }
+
+    @Test
+    void getCountsHitsAndMisses() {
+        ProfileCache<Integer> cache = new ProfileCache<>(1 << 20);
+        Profile profile = plainProfile(1);
+        assertNull(cache.get(1));
+        cache.put(1, profile);
+        assertSame(profile, cache.get(1));
+        assertSame(profile, cache.get(1));
+
+        ProfileCache.Stats stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(0, stats.evictions());
+        assertEquals(1, stats.size());
+        assertEquals(ProfileCache.estimatedBytes(profile), stats.bytes());
+    }
+
+    @Test
+    void putEvictsLeastRecentlyUsedProfilesBeyondBudget() {
+        long profileBytes = ProfileCache.estimatedBytes(plainProfile(0));
+        ProfileCache<Integer> cache = new ProfileCache<>(3 * profileBytes);
+        for (int i = 0; i < 3; i++) cache.put(i, plainProfile(i));
+        cache.get(0);
+        cache.put(3, plainProfile(3));
+
+        // Le profil 1 est celui qui a été utilisé le moins récemment
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(0));
+        assertNotNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertEquals(1, cache.stats().evictions());
+        assertEquals(3 * profileBytes, cache.stats().bytes());
+    }
+
+    @Test
+    void putReplacesProfileAndIgnoresProfilesLargerThanBudget() {
+        long profileBytes = ProfileCache.estimatedBytes(plainProfile(0));
+        ProfileCache<Integer> cache = new ProfileCache<>(profileBytes);
+        cache.put(0, plainProfile(0));
+        Profile replacement = plainProfile(0);
+        cache.put(0, replacement);
+        assertSame(replacement, cache.get(0));
+        assertEquals(profileBytes, cache.stats().bytes());
+        assertEquals(0, cache.stats().evictions());
+
+        cache.put(1, new Router(TIME_TABLE).profile(DATE, 1));
+        assertNull(cache.get(1));
+        assertSame(replacement, cache.get(0));
+    }
+
+    @Test
+    void getOrComputeComputesOnlyMissingProfiles() {
+        ProfileCache<Integer> cache = new ProfileCache<>(1 << 20);
+        AtomicInteger computations = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            Profile profile = cache.getOrCompute(7, k -> {
+                computations.incrementAndGet();
+                return plainProfile(k);
+            });
+            assertEquals(7, profile.arrStationId());
+        }
+        assertEquals(1, computations.get());
+        assertEquals(2, cache.stats().hits());
+    }
+
+    @Test
+    void concurrentRequestsShareOneComputation() throws InterruptedException {
+        ProfileCache<Integer> cache = new ProfileCache<>(1 << 20);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch waiting = new CountDownLatch(1);
+        int threadsCount = 8;
+
+        List<Profile> results = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadsCount; i++) {
+            threads.add(Thread.ofPlatform().start(() -> results.add(cache.getOrCompute(5, k -> {
+                computations.incrementAndGet();
+                try {
+                    // Le calcul dure jusqu'à ce que toutes les demandes l'attendent
+                    waiting.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return plainProfile(k);
+            }))));
+        }
+        while (cache.stats().misses() < threadsCount) Thread.sleep(1);
+        waiting.countDown();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(1, computations.get());
+        assertEquals(threadsCount, results.size());
+        for (Profile profile : results) assertSame(results.getFirst(), profile);
+        assertEquals(threadsCount - 1, cache.stats().coalesced());
+        assertSame(results.getFirst(), cache.get(5));
+    }
+
+    @Test
+    void failedComputationIsSharedButNotCached() throws InterruptedException {
+        ProfileCache<Integer> cache = new ProfileCache<>(1 << 20);
+        CountDownLatch waiting = new CountDownLatch(1);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        Thread first = Thread.ofPlatform().start(() -> {
+            try {
+                cache.getOrCompute(2, k -> {
+                    try {
+                        waiting.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    throw new IllegalStateException("échec");
+                });
+            } catch (IllegalStateException e) {
+                failures.add(e);
+            }
+        });
+        while (cache.stats().misses() < 1) Thread.sleep(1);
+        Thread second = Thread.ofPlatform().start(() -> {
+            try {
+                cache.getOrCompute(2, k -> {
+                    fail("le profil ne doit être calculé qu'une fois");
+                    return null;
+                });
+            } catch (IllegalStateException e) {
+                failures.add(e);
+            }
+        });
+        while (cache.stats().coalesced() < 1) Thread.sleep(1);
+        waiting.countDown();
+        first.join();
+        second.join();
+
+        assertEquals(2, failures.size());
+        assertEquals("échec", failures.get(0).getMessage());
+        assertEquals("échec", failures.get(1).getMessage());
+
+        // Le calcul suivant est relancé
+        assertEquals(2, cache.getOrCompute(2, MyProfileCacheTest::plainProfile).arrStationId());
+    }
+
+    @Test
+    void cancelledComputationIsRetriedByWaitingRequests() throws InterruptedException {
+        ProfileCache<Integer> cache = new ProfileCache<>(1 << 20);
+        CountDownLatch waiting = new CountDownLatch(1);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        Thread first = Thread.ofPlatform().start(() -> {
+            try {
+                cache.getOrCompute(4, k -> {
+                    try {
+                        waiting.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    throw new CancellationException();
+                });
+            } catch (CancellationException e) {
+                failures.add(e);
+            }
+        });
+        while (cache.stats().misses() < 1) Thread.sleep(1);
+        AtomicInteger computations = new AtomicInteger();
+        List<Profile> results = Collections.synchronizedList(new ArrayList<>());
+        Thread second = Thread.ofPlatform().start(() -> results.add(cache.getOrCompute(4, k -> {
+            computations.incrementAndGet();
+            return plainProfile(k);
+        })));
+        while (cache.stats().coalesced() < 1) Thread.sleep(1);
+        waiting.countDown();
+        first.join();
+        second.join();
+
+        // Seul l'appel dont le calcul a été annulé échoue, l'autre relance le calcul
+        assertEquals(1, failures.size());
+        assertEquals(1, computations.get());
+        assertEquals(1, results.size());
+        assertSame(results.getFirst(), cache.get(4));
+    }
+
+    @Test
+    void heapPressureHalvesCache() {
+        long profileBytes = ProfileCache.estimatedBytes(plainProfile(0));
+        ProfileCache<Integer> cache = new ProfileCache<>(10 * profileBytes);
+        for (int i = 0; i < 8; i++) cache.put(i, plainProfile(i));
+        cache.onHeapPressure();
+
+        assertEquals(4, cache.stats().size());
+        assertEquals(4, cache.stats().evictions());
+        for (int i = 0; i < 4; i++) assertNull(cache.get(i));
+        for (int i = 4; i < 8; i++) assertNotNull(cache.get(i));
+
+        cache.clear();
+        assertEquals(0, cache.stats().size());
+        assertEquals(0, cache.stats().bytes());
+    }
+
+    @Test
+    void watchHeapPressureCanBeStoppedOnce() {
+        ProfileCache<Integer> cache = new ProfileCache<>(1 << 20);
+        assertThrows(IllegalArgumentException.class, () -> cache.watchHeapPressure(0));
+        assertThrows(IllegalArgumentException.class, () -> cache.watchHeapPressure(1));
+        cache.watchHeapPressure(0.95);
+        assertThrows(IllegalArgumentException.class, () -> cache.watchHeapPressure(0.95));
+        assertDoesNotThrow(cache::close);
+        assertDoesNotThrow(cache::close);
+    }
+
+    @Test
+    void constructorThrowsOnInvalidBudget() {
+        assertThrows(IllegalArgumentException.class, () -> new ProfileCache<Integer>(0));
+    }
+}
@@ -0,0 +1,159 @@
+package ch.epfl.rechor.journey;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyProfileStoreTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, Month.APRIL, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storedProfileGivesSameFrontsAndJourneys() throws IOException {
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(3, 60, 800, 0, 0);
+        Router router = new Router(timeTable);
+        ProfileStore store = new ProfileStore(directory, "v1");
+
+        for (int arrStationId = 0; arrStationId < 30; arrStationId += 4) {
+            Profile profile = router.profile(DATE, arrStationId);
+            assertFalse(store.contains(DATE, arrStationId));
+            store.store(profile);
+            assertTrue(store.contains(DATE, arrStationId));
+
+            Profile loaded = store.load(timeTable, DATE, arrStationId).orElseThrow();
+            assertEquals(DATE, loaded.date());
+            assertEquals(arrStationId, loaded.arrStationId());
+            assertEquals(profile.stationFront().size(), loaded.stationFront().size());
+            for (int stationId = 0; stationId < timeTable.stations().size(); stationId++)
+                assertEquals(tuples(profile.forStation(stationId)), tuples(loaded.forStation(stationId)));
+            for (int depStationId = 0; depStationId < 30; depStationId += 3)
+                assertEquals(
+                        JourneyExtractor.journeys(profile, depStationId),
+                        JourneyExtractor.journeys(loaded, depStationId));
+        }
+    }
+
+    @Test
+    void loadedProfileCountsItsMappedFileInCache() throws IOException {
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(1, 20, 100, 0, 0);
+        ProfileStore store = new ProfileStore(directory, "v1");
+        Profile loaded = store.loadOrCompute(new Router(timeTable), DATE, 3);
+        long fileBytes = Files.size(store.pathFor(DATE, 3));
+
+        // Chaque profil chargé retient la projection de son fichier : le budget en limite donc le nombre
+        assertTrue(ProfileCache.estimatedBytes(loaded) >= fileBytes);
+        ProfileCache<Integer> cache = new ProfileCache<>(3 * ProfileCache.estimatedBytes(loaded));
+        for (int i = 0; i < 10; i++) cache.put(i, store.load(timeTable, DATE, 3).orElseThrow());
+        assertEquals(3, cache.stats().size());
+        assertEquals(7, cache.stats().evictions());
+    }
+
+    @Test
+    void loadedProfileIsImmutableAndNotCopied() throws IOException {
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(1, 20, 100, 0, 0);
+        ProfileStore store = new ProfileStore(directory, "v1");
+        Profile loaded = store.loadOrCompute(new Router(timeTable), DATE, 3);
+
+        assertSame(loaded.stationFront(), new Profile(timeTable, DATE, 3, loaded.stationFront()).stationFront());
+        assertThrows(UnsupportedOperationException.class, () -> loaded.stationFront().add(ParetoFront.EMPTY));
+        assertThrows(IndexOutOfBoundsException.class, () -> loaded.forStation(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> loaded.forStation(timeTable.stations().size()));
+    }
+
+    @Test
+    void loadOrComputeWritesEachProfileOnce() throws IOException {
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(1, 20, 100, 0, 0);
+        Router router = new Router(timeTable);
+        ProfileStore store = new ProfileStore(directory, "v1");
+
+        Profile first = store.loadOrCompute(router, DATE, 5);
+        Path path = store.pathFor(DATE, 5);
+        assertTrue(Files.isRegularFile(path));
+        long modified = Files.getLastModifiedTime(path).toMillis();
+
+        Profile second = store.loadOrCompute(router, DATE, 5);
+        assertEquals(modified, Files.getLastModifiedTime(path).toMillis());
+        for (int stationId = 0; stationId < timeTable.stations().size(); stationId++)
+            assertEquals(tuples(first.forStation(stationId)), tuples(second.forStation(stationId)));
+
+        // Aucun fichier temporaire ne subsiste
+        try (var files = Files.list(path.getParent())) {
+            assertEquals(List.of(path), files.toList());
+        }
+    }
+
+    @Test
+    void loadReturnsEmptyWhenAbsent() throws IOException {
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(1, 10, 10, 0, 0);
+        ProfileStore store = new ProfileStore(directory, "v1");
+        assertTrue(store.load(timeTable, DATE, 0).isEmpty());
+
+        // Un profil stocké pour une autre version n'est pas visible
+        new ProfileStore(directory, "v2").loadOrCompute(new Router(timeTable), DATE, 0);
+        assertTrue(store.load(timeTable, DATE, 0).isEmpty());
+        assertTrue(store.load(timeTable, DATE.plusDays(1), 0).isEmpty());
+    }
+
+    @Test
+    void loadThrowsOnInvalidOrMismatchedFile() throws IOException {
+        MyRouterTest.SyntheticTimeTable timeTable = MyRouterTest.SyntheticTimeTable.generate(1, 10, 10, 0, 0);
+        ProfileStore store = new ProfileStore(directory, "v1");
+        store.loadOrCompute(new Router(timeTable), DATE, 0);
+
+        // Fichier d'une autre gare placé au mauvais endroit
+        Path other = store.pathFor(DATE, 1);
+        Files.copy(store.pathFor(DATE, 0), other);
+        assertThrows(IOException.class, () -> store.load(timeTable, DATE, 1));
+
+        // Fichier tronqué
+        byte[] bytes = Files.readAllBytes(store.pathFor(DATE, 0));
+        Files.write(other, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> store.load(timeTable, DATE, 1));
+
+        // Fichier vide
+        Files.write(other, new byte[0]);
+        assertThrows(IOException.class, () -> store.load(timeTable, DATE, 1));
+
+        // Horaire d'une autre taille
+        assertThrows(IOException.class,
+                () -> store.load(MyRouterTest.SyntheticTimeTable.generate(1, 11, 10, 0, 0), DATE, 0));
+    }
+
+    @Test
+    void constructorThrowsOnInvalidVersion() {
+        for (String version : List.of("", ".", "..", "a/b", "a b", "é"))
+            assertThrows(IllegalArgumentException.class, () -> new ProfileStore(directory, version));
+        assertDoesNotThrow(() -> new ProfileStore(directory, "2025-04_v1.0"));
+    }
+
+    @Test
+    void versionOfChangesWithTimeTableFiles() throws IOException {
+        Path timeTableDirectory = Files.createDirectory(directory.resolve("timetable"));
+        Files.write(timeTableDirectory.resolve("stations.bin"), new byte[]{1, 2, 3});
+        String version = ProfileStore.versionOf(timeTableDirectory);
+        assertTrue(version.matches("[0-9a-f]{16}"));
+        assertEquals(version, ProfileStore.versionOf(timeTableDirectory));
+
+        Files.write(timeTableDirectory.resolve("stations.bin"), new byte[]{1, 2, 3, 4});
+        assertNotEquals(version, ProfileStore.versionOf(timeTableDirectory));
+    }
+
+    private static List<Long> tuples(ParetoFront front) {
+        List<Long> tuples = new ArrayList<>();
+        front.forEach(tuples::add);
+        return tuples;
+    }
+}
@@ -1,16 +1,22 @@
 package ch.epfl.rechor.journey;
 
-import ch.epfl.rechor.timetable.CachedTimeTable;
-import ch.epfl.rechor.timetable.Stations;
-import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.PackedRange;
+import ch.epfl.rechor.timetable.*;
 import ch.epfl.rechor.timetable.mapped.FileTimeTable;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.Month;
-import java.util.NoSuchElementException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -46,4 +52,419 @@ class MyRouterTest {
         double elapsed = (System.nanoTime() - tStart) * 1e-9;
         System.out.printf("Temps écoulé : %.3f s%n", elapsed);
     }
-}
\ No newline at end of file
+
+    @Test
+    void profileAllocationDoesNotGrowWithConnections() {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+
+        // Même réseau, mais 20 fois plus de courses dans la région qui atteint la gare d'arrivée :
+        // les liaisons supplémentaires construisent et fusionnent donc des frontières
+        Router smallRouter = new Router(SyntheticTimeTable.generate(1, 40, 100, 0, 0));
+        Router largeRouter = new Router(SyntheticTimeTable.generate(1, 40, 2000, 0, 0));
+        assertTrue(largeRouter.timetable().connectionsFor(date).size()
+                > 10 * smallRouter.timetable().connectionsFor(date).size());
+
+        long smallBytes = allocatedBytesPerProfile(smallRouter, date);
+        long largeBytes = allocatedBytesPerProfile(largeRouter, date);
+
+        // Hormis le profil obtenu, les ~9'000 liaisons supplémentaires ne doivent rien allouer
+        assertTrue(largeBytes - smallBytes < 16 * 1024,
+                "small = " + smallBytes + " B, large = " + largeBytes + " B");
+    }
+
+    @Test
+    void windowedProfileEqualsFilteredFullProfile() {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        SyntheticTimeTable timeTable = SyntheticTimeTable.generate(7, 60, 800, 0, 0);
+        Router router = new Router(timeTable);
+        int[][] windows = {{7 * 60, 9 * 60}, {12 * 60, 12 * 60 + 30}, {5 * 60, 23 * 60}};
+
+        for (int[] window : windows) for (int arrStationId = 0; arrStationId < 30; arrStationId += 3) {
+            int minDepMins = window[0];
+            int maxArrMins = window[1];
+            Profile full = router.profile(date, arrStationId);
+            Profile windowed = router.profile(date, arrStationId, minDepMins, maxArrMins);
+
+            for (int stationId = 0; stationId < timeTable.stations().size(); stationId += 1) {
+                List<Long> expected = new ArrayList<>();
+                full.forStation(stationId).forEach(t -> {
+                    if (PackedCriteria.depMins(t) >= minDepMins && PackedCriteria.arrMins(t) <= maxArrMins)
+                        expected.add(t);
+                });
+                List<Long> actual = new ArrayList<>();
+                windowed.forStation(stationId).forEach(actual::add);
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    void windowedProfileThrowsOnEmptyWindow() {
+        Router router = new Router(SyntheticTimeTable.generate(1, 10, 10, 0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> router.profile(LocalDate.of(2025, Month.APRIL, 1), 0, 600, 599));
+    }
+
+    @Test
+    void oneToOneProfileGivesSameJourneysAsFullProfile() {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        SyntheticTimeTable timeTable = SyntheticTimeTable.generate(3, 60, 800, 0, 0);
+        Router router = new Router(timeTable);
+
+        for (int arrStationId = 0; arrStationId < 30; arrStationId += 4) {
+            Profile full = router.profile(date, arrStationId);
+            for (int depStationId = 1; depStationId < 30; depStationId += 5) {
+                Profile oneToOne = router.oneToOneProfile(date, depStationId, arrStationId);
+                assertEquals(
+                        JourneyExtractor.journeys(full, depStationId),
+                        JourneyExtractor.journeys(oneToOne, depStationId));
+            }
+        }
+    }
+
+    @Test
+    void oneToOneProfileThrowsOnInvalidDepStation() {
+        SyntheticTimeTable timeTable = SyntheticTimeTable.generate(1, 10, 10, 0, 0);
+        Router router = new Router(timeTable);
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> router.oneToOneProfile(LocalDate.of(2025, Month.APRIL, 1), 10, 0));
+    }
+
+    @Test
+    void batchProfilesEqualSerialProfiles() throws InterruptedException {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        SyntheticTimeTable timeTable = SyntheticTimeTable.generate(5, 60, 800, 0, 0);
+        Router router = new Router(timeTable);
+        List<Integer> arrStationIds = List.of(0, 7, 14, 21, 28, 35, 42);
+        List<TimedProfile> serialProfiles = arrStationIds.stream().map(id -> router.timedProfile(date, id)).toList();
+
+        for (ExecutorService executor : List.of(new ForkJoinPool(4), Executors.newVirtualThreadPerTaskExecutor())) {
+            try (executor) {
+                List<TimedProfile> timedProfiles = router.profiles(date, arrStationIds, executor);
+                assertEquals(arrStationIds.size(), timedProfiles.size());
+
+                for (int i = 0; i < arrStationIds.size(); i += 1) {
+                    TimedProfile timedProfile = timedProfiles.get(i);
+                    int arrStationId = arrStationIds.get(i);
+                    assertEquals(arrStationId, timedProfile.arrStationId());
+                    assertEquals(arrStationId, timedProfile.profile().arrStationId());
+                    assertFalse(timedProfile.computeTime().isNegative());
+
+                    Profile expected = router.profile(date, arrStationId);
+                    assertEquals(serialProfiles.get(i).peakLiveTripFronts(), timedProfile.peakLiveTripFronts());
+                    for (int stationId = 0; stationId < timeTable.stations().size(); stationId += 1) {
+                        assertEquals(
+                                tuples(expected.forStation(stationId)),
+                                tuples(timedProfile.profile().forStation(stationId)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void tripFrontsAreReleasedDuringScan() {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        SyntheticTimeTable timeTable = SyntheticTimeTable.generate(5, 60, 800, 0, 0);
+        Router router = new Router(timeTable);
+
+        // Les courses sont courtes et réparties sur la journée : seule une petite partie d'entre elles
+        // a une frontière vivante à un instant donné du parcours
+        TimedProfile timedProfile = router.timedProfile(date, 0);
+        int peak = timedProfile.peakLiveTripFronts();
+        assertTrue(peak > 0);
+        assertTrue(peak < timeTable.tripsFor(date).size() / 4, "peak = " + peak);
+        assertEquals(0, timedProfile.arrStationId());
+        assertFalse(timedProfile.computeTime().isNegative());
+
+        // Le maximum de tous les calculs compte aussi ceux des autres méthodes
+        router.oneToOneProfile(date, 3, 0);
+        assertTrue(Router.peakLiveTripFronts() >= peak);
+    }
+
+    @Test
+    void builtProfileIsCompactAndImmutable() {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        SyntheticTimeTable timeTable = SyntheticTimeTable.generate(5, 60, 800, 0, 0);
+        Profile profile = new Router(timeTable).profile(date, 3);
+
+        // Les frontières sont des vues : une copie de la liste, sous forme habituelle, contient les mêmes tuples
+        List<ParetoFront> copy = new ArrayList<>(profile.stationFront());
+        Profile copied = new Profile(timeTable, date, 3, copy);
+        int empty = 0;
+        for (int stationId = 0; stationId < timeTable.stations().size(); stationId += 1) {
+            assertEquals(tuples(profile.forStation(stationId)), tuples(copied.forStation(stationId)));
+            if (profile.forStation(stationId).size() == 0) {
+                assertSame(ParetoFront.EMPTY, profile.forStation(stationId));
+                empty += 1;
+            }
+        }
+        assertTrue(empty > 0);
+
+        // La forme compacte est immuable, et n'est donc pas copiée par le constructeur
+        assertThrows(UnsupportedOperationException.class, () -> profile.stationFront().set(0, ParetoFront.EMPTY));
+        assertThrows(UnsupportedOperationException.class, () -> profile.stationFront().add(ParetoFront.EMPTY));
+        assertSame(profile.stationFront(), new Profile(timeTable, date, 3, profile.stationFront()).stationFront());
+        assertThrows(IndexOutOfBoundsException.class, () -> profile.forStation(timeTable.stations().size()));
+    }
+
+    @Test
+    void tripFrontsSurviveSameMinuteConnectionsOfOneTrip() {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        List<int[]> transfersList = new ArrayList<>();
+        for (int s = 0; s < 5; s += 1) transfersList.add(new int[]{s, s, 2});
+
+        // Course 0 : 0 -> 1 -> 2 -> 3 -> 4, dont les trois premières liaisons partent toutes à 600
+        // (les deux premières étant de durée nulle), et ne sont donc ordonnées que par leur position
+        List<int[]> connectionsList = new ArrayList<>(List.of(
+                new int[]{0, 600, 1, 600, 0, 0},
+                new int[]{1, 600, 2, 600, 0, 1},
+                new int[]{2, 600, 3, 605, 0, 2},
+                new int[]{3, 606, 4, 610, 0, 3}));
+        SyntheticTimeTable timeTable = new SyntheticTimeTable(5, transfersList, connectionsList, 1);
+        Connections connections = timeTable.connectionsFor(date);
+        for (int i = 0; i < 4; i += 1) assertEquals(3 - i, connections.tripPos(i));
+
+        // Chaque gare de la course atteint la gare 4 sans changement, la frontière de la course
+        // n'étant libérée qu'à sa première liaison
+        Profile profile = new Router(timeTable).profile(date, 4);
+        for (int stationId = 0; stationId < 3; stationId += 1) {
+            List<Long> tuples = tuples(profile.forStation(stationId));
+            assertEquals(1, tuples.size());
+            // L'heure de départ tient compte du changement de 2 minutes à la gare de départ
+            assertEquals(598, PackedCriteria.depMins(tuples.getFirst()));
+            assertEquals(0, PackedCriteria.changes(tuples.getFirst()));
+        }
+        List<Journey> journeys = JourneyExtractor.journeys(profile, 0);
+        assertEquals(1, journeys.size());
+        assertEquals(date.atTime(10, 0), journeys.getFirst().depTime());
+        assertEquals(date.atTime(10, 10), journeys.getFirst().arrTime());
+    }
+
+    @Test
+    void batchProfilesThrowsOnInvalidArrStation() {
+        Router router = new Router(SyntheticTimeTable.generate(1, 10, 10, 0, 0));
+        try (ExecutorService executor = new ForkJoinPool(2)) {
+            assertThrows(IndexOutOfBoundsException.class,
+                    () -> router.profiles(LocalDate.of(2025, Month.APRIL, 1), List.of(0, 10), executor));
+        }
+    }
+
+    @Test
+    void cancelledProfileThrowsAndLeavesWorkspaceReusable() {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        SyntheticTimeTable timeTable = SyntheticTimeTable.generate(5, 60, 3000, 0, 0);
+        Router router = new Router(timeTable);
+        assertTrue(timeTable.connectionsFor(date).size() > 2 * 4096);
+
+        // Un calcul déjà annulé ne parcourt aucune liaison
+        assertThrows(CancellationException.class, () -> router.profile(date, 3, () -> true));
+
+        // La demande d'annulation est consultée pendant le parcours des liaisons
+        AtomicInteger checks = new AtomicInteger();
+        assertThrows(CancellationException.class,
+                () -> router.profile(date, 3, () -> checks.incrementAndGet() > 2));
+        assertEquals(3, checks.get());
+
+        // Un calcul annulé ne perturbe pas le calcul suivant, dans le même espace de travail
+        Profile expected = router.profile(date, 3);
+        Profile actual = router.profile(date, 3, () -> false);
+        for (int stationId = 0; stationId < 60; stationId++)
+            assertEquals(tuples(expected.forStation(stationId)), tuples(actual.forStation(stationId)));
+    }
+
+    private static List<Long> tuples(ParetoFront front) {
+        List<Long> tuples = new ArrayList<>();
+        front.forEach(tuples::add);
+        return tuples;
+    }
+
+    private static long allocatedBytesPerProfile(Router router, LocalDate date) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        // Préchauffage, pour que la mesure ne dépende pas de la compilation JIT
+        for (int i = 0; i < 20; i += 1) router.profile(date, 0);
+
+        // Le profil obtenu, dont la taille dépend du nombre de tuples, n'est pas compté
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i += 1) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            Profile profile = router.profile(date, 0);
+            long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+            min = Math.min(min, allocated - ((ImmutableStationFronts) profile.stationFront()).heapBytes());
+        }
+        return min;
+    }
+
+    /**
+     * Horaire synthétique en mémoire, sans voies ni quais, dont les gares sont réparties en deux
+     * régions : la première moitié des gares (contenant la gare 0) est parcourue par des courses
+     * courtes et aléatoires, la seconde est isolée et parcourue par des courses de longueur donnée.
+     * Aucun changement ni aucune liaison ne relie les deux régions.
+     */
+    static final class SyntheticTimeTable implements TimeTable {
+        private final int stationsCount;
+        private final int[] transferDep, transferArr, transferMinutes, arrivingAt, transfersByDep;
+        private final int[] depStop, depMins, arrStop, arrMins, tripId, tripPos, next;
+        private final int tripsCount;
+
+        private final Stations stations = new Stations() {
+            @Override public String name(int id) { return "Gare " + Objects.checkIndex(id, stationsCount); }
+            @Override public double longitude(int id) { return 6 + id * 1e-3; }
+            @Override public double latitude(int id) { return 46 + id * 1e-3; }
+            @Override public int size() { return stationsCount; }
+        };
+
+        private final Platforms platforms = new Platforms() {
+            @Override public String name(int id) { throw new IndexOutOfBoundsException(); }
+            @Override public int stationId(int id) { throw new IndexOutOfBoundsException(); }
+            @Override public int size() { return 0; }
+        };
+
+        private final Transfers transfers = new Transfers() {
+            @Override public int depStationId(int id) { return transferDep[id]; }
+            @Override public int minutes(int id) { return transferMinutes[id]; }
+            @Override public int arrivingAt(int stationId) { return arrivingAt[stationId]; }
+            @Override public int minutesBetween(int depStationId, int arrStationId) {
+                int range = arrivingAt[arrStationId];
+                for (int i = PackedRange.startInclusive(range); i < PackedRange.endExclusive(range); i += 1)
+                    if (transferDep[i] == depStationId) return transferMinutes[i];
+                throw new NoSuchElementException();
+            }
+            @Override public int departingTransferId(int position) { return transfersByDep[position]; }
+            @Override public int size() { return transferDep.length; }
+        };
+
+        private final Trips trips = new Trips() {
+            @Override public int routeId(int id) { return Objects.checkIndex(id, tripsCount) % 2; }
+            @Override public String destination(int id) { return "Destination " + id; }
+            @Override public int size() { return tripsCount; }
+        };
+
+        private final Connections connections = new Connections() {
+            @Override public int depStopId(int id) { return depStop[id]; }
+            @Override public int depMins(int id) { return depMins[id]; }
+            @Override public int arrStopId(int id) { return arrStop[id]; }
+            @Override public int arrMins(int id) { return arrMins[id]; }
+            @Override public int tripId(int id) { return tripId[id]; }
+            @Override public int tripPos(int id) { return tripPos[id]; }
+            @Override public int nextConnectionId(int id) { return next[id]; }
+            @Override public int size() { return depMins.length; }
+        };
+
+        private final Routes routes = new Routes() {
+            @Override public Vehicle vehicle(int id) { return id == 0 ? Vehicle.TRAIN : Vehicle.BUS; }
+            @Override public String name(int id) { return "Ligne " + id; }
+            @Override public int size() { return 2; }
+        };
+
+        private final StationAliases aliases = new StationAliases() {
+            @Override public String alias(int id) { throw new IndexOutOfBoundsException(); }
+            @Override public String stationName(int id) { throw new IndexOutOfBoundsException(); }
+            @Override public int size() { return 0; }
+        };
+
+        private SyntheticTimeTable(int stationsCount, List<int[]> transfersList, List<int[]> connectionsList,
+                                   int tripsCount) {
+            this.stationsCount = stationsCount;
+            this.tripsCount = tripsCount;
+
+            // Changements triés par gare d'arrivée : { dep, arr, minutes }
+            transfersList.sort(Comparator.<int[]>comparingInt(t -> t[1]).thenComparingInt(t -> t[0]));
+            transferDep = transfersList.stream().mapToInt(t -> t[0]).toArray();
+            transferArr = transfersList.stream().mapToInt(t -> t[1]).toArray();
+            transferMinutes = transfersList.stream().mapToInt(t -> t[2]).toArray();
+            arrivingAt = new int[stationsCount];
+            for (int start = 0, end; start < transferArr.length; start = end) {
+                end = start;
+                while (end < transferArr.length && transferArr[end] == transferArr[start]) end += 1;
+                arrivingAt[transferArr[start]] = PackedRange.pack(start, end);
+            }
+            transfersByDep = IntStream.range(0, transferDep.length).boxed()
+                    .sorted(Comparator.<Integer>comparingInt(i -> transferDep[i]).thenComparingInt(i -> i))
+                    .mapToInt(Integer::intValue).toArray();
+
+            // Liaisons triées par heure de départ décroissante : { depStop, depMins, arrStop, arrMins, trip, pos },
+            // celles d'une même course partant à la même minute l'étant par position décroissante
+            connectionsList.sort(Comparator.<int[]>comparingInt(c -> -c[1])
+                    .thenComparingInt(c -> -c[3]).thenComparingInt(c -> c[4]).thenComparingInt(c -> -c[5]));
+            int n = connectionsList.size();
+            depStop = new int[n]; depMins = new int[n]; arrStop = new int[n]; arrMins = new int[n];
+            tripId = new int[n]; tripPos = new int[n]; next = new int[n];
+            Map<Long, Integer> byTripPos = new HashMap<>();
+            int[] tripLength = new int[tripsCount];
+            for (int i = 0; i < n; i += 1) {
+                int[] c = connectionsList.get(i);
+                depStop[i] = c[0]; depMins[i] = c[1]; arrStop[i] = c[2]; arrMins[i] = c[3];
+                tripId[i] = c[4]; tripPos[i] = c[5];
+                byTripPos.put(((long) c[4] << 32) | c[5], i);
+                tripLength[c[4]] = Math.max(tripLength[c[4]], c[5] + 1);
+            }
+            for (int i = 0; i < n; i += 1) {
+                int nextPos = tripPos[i] + 1 == tripLength[tripId[i]] ? 0 : tripPos[i] + 1;
+                next[i] = byTripPos.get(((long) tripId[i] << 32) | nextPos);
+            }
+        }
+
+        /**
+         * Génère un horaire synthétique reproductible
+         * @param seed graine du générateur aléatoire
+         * @param stationsCount nombre total de gares (les deux régions)
+         * @param tripsCount nombre de courses de la région contenant la gare 0
+         * @param isolatedTripsCount nombre de courses de la région isolée
+         * @param isolatedTripLength nombre de liaisons des courses de la région isolée (au plus 255)
+         * @return l'horaire
+         */
+        static SyntheticTimeTable generate(long seed, int stationsCount, int tripsCount,
+                                           int isolatedTripsCount, int isolatedTripLength) {
+            Random rng = new Random(seed);
+            int half = stationsCount / 2;
+
+            List<int[]> transfersList = new ArrayList<>();
+            for (int s = 0; s < stationsCount; s += 1) {
+                transfersList.add(new int[]{s, s, 2 + rng.nextInt(3)});
+                boolean sameRegion = (s + 1 < half) || (s >= half && s + 1 < stationsCount);
+                if (sameRegion) {
+                    int minutes = 3 + rng.nextInt(6);
+                    transfersList.add(new int[]{s, s + 1, minutes});
+                    transfersList.add(new int[]{s + 1, s, minutes});
+                }
+            }
+
+            List<int[]> connectionsList = new ArrayList<>();
+            for (int t = 0; t < tripsCount; t += 1)
+                addTrip(rng, connectionsList, t, 0, half, 1 + rng.nextInt(8));
+            for (int t = 0; t < isolatedTripsCount; t += 1)
+                addTrip(rng, connectionsList, tripsCount + t, half, stationsCount, isolatedTripLength);
+
+            return new SyntheticTimeTable(stationsCount, transfersList, connectionsList,
+                    tripsCount + isolatedTripsCount);
+        }
+
+        private static void addTrip(Random rng, List<int[]> connectionsList, int trip,
+                                    int firstStation, int endStation, int length) {
+            int stop = firstStation + rng.nextInt(endStation - firstStation);
+            int mins = 300 + rng.nextInt(900);
+            for (int pos = 0; pos < length; pos += 1) {
+                int nextStop;
+                do {
+                    nextStop = firstStation + rng.nextInt(endStation - firstStation);
+                } while (nextStop == stop);
+                int arr = mins + 1 + rng.nextInt(3);
+                connectionsList.add(new int[]{stop, mins, nextStop, arr, trip, pos});
+                stop = nextStop;
+                mins = arr + rng.nextInt(2);
+            }
+        }
+
+        @Override public Stations stations() { return stations; }
+        @Override public StationAliases stationAliases() { return aliases; }
+        @Override public Platforms platforms() { return platforms; }
+        @Override public Routes routes() { return routes; }
+        @Override public Transfers transfers() { return transfers; }
+        @Override public Trips tripsFor(LocalDate date) { return trips; }
+        @Override public Connections connectionsFor(LocalDate date) { return connections; }
+    }
+}
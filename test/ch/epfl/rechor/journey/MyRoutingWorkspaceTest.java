@@ -0,0 +1,124 @@
+package ch.epfl.rechor.journey;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyRoutingWorkspaceTest {
+
+    @Test
+    void resetEmptiesAllFronts() {
+        RoutingWorkspace workspace = new RoutingWorkspace();
+        workspace.reset(10, 20);
+        ParetoFront.Builder stationFront = workspace.newFront().add(500, 1, 0);
+        workspace.setStationFront(3, stationFront);
+        workspace.setTripFront(7, workspace.newFront());
+        workspace.scratchFront().add(510, 0, 0);
+        assertSame(stationFront, workspace.stationFront(3));
+        assertNotNull(workspace.tripFront(7));
+
+        workspace.reset(10, 20);
+        assertNull(workspace.stationFront(3));
+        assertNull(workspace.tripFront(7));
+        assertTrue(workspace.scratchFront().isEmpty());
+        assertTrue(workspace.newFront().isEmpty());
+    }
+
+    @Test
+    void indexesAreCheckedAgainstCurrentSizes() {
+        RoutingWorkspace workspace = new RoutingWorkspace();
+        workspace.reset(100, 100);
+        workspace.reset(10, 5);
+        assertThrows(IndexOutOfBoundsException.class, () -> workspace.stationFront(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> workspace.setStationFront(-1, null));
+        assertThrows(IndexOutOfBoundsException.class, () -> workspace.tripFront(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> workspace.setTripFront(5, null));
+        assertEquals(10, workspace.walkMinutes().length);
+    }
+
+    @Test
+    void reusedWorkspaceGivesSameProfilesAsFreshOne() {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        Router small = new Router(MyRouterTest.SyntheticTimeTable.generate(3, 30, 300, 0, 0));
+        Router large = new Router(MyRouterTest.SyntheticTimeTable.generate(4, 80, 900, 20, 10));
+
+        // Chaque profil est d'abord calculé avec un nouvel espace de travail, la réserve étant vidée
+        List<List<List<Long>>> expected = new ArrayList<>();
+        for (int arrStationId = 0; arrStationId < 30; arrStationId += 3) {
+            Router.WORKSPACES.clear();
+            expected.add(fronts(small.profile(date, arrStationId)));
+            Router.WORKSPACES.clear();
+            expected.add(fronts(large.profile(date, arrStationId)));
+        }
+
+        // Puis tous avec le même espace de travail, en alternant des horaires de tailles différentes
+        List<List<List<Long>>> actual = new ArrayList<>();
+        for (int arrStationId = 0; arrStationId < 30; arrStationId += 3) {
+            actual.add(fronts(small.profile(date, arrStationId)));
+            actual.add(fronts(large.profile(date, arrStationId)));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void poolReusesReleasedWorkspacesUpToItsLimit() {
+        RoutingWorkspacePool pool = new RoutingWorkspacePool(1);
+        RoutingWorkspace first = pool.acquire();
+        RoutingWorkspace second = pool.acquire();
+        assertNotSame(first, second);
+        assertEquals(0, pool.idleCount());
+
+        // Le dernier espace rendu est réutilisé, celui rendu au-delà de la limite est abandonné
+        first.reset(10, 20);
+        first.setTripFront(3, first.newFront());
+        first.setTripFront(4, first.newFront());
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.idleCount());
+        assertEquals(first.retainedBytes(), pool.peakWorkspaceBytes());
+        assertEquals(2, pool.peakLiveTripFronts());
+        assertSame(first, pool.acquire());
+        assertEquals(0, pool.idleCount());
+
+        pool.release(first);
+        pool.clear();
+        assertEquals(0, pool.idleCount());
+        assertNotSame(first, pool.acquire());
+        assertThrows(IllegalArgumentException.class, () -> new RoutingWorkspacePool(-1));
+    }
+
+    @Test
+    void virtualThreadsDoNotRetainWorkspaces() throws InterruptedException {
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        Router router = new Router(MyRouterTest.SyntheticTimeTable.generate(3, 30, 300, 0, 0));
+        int profilesCount = 64;
+
+        // Chaque calcul a lieu sur un nouveau fil virtuel, mais les espaces de travail sont rendus à la réserve,
+        // qui n'en conserve pas plus qu'un par processeur
+        Router.WORKSPACES.clear();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Integer> arrStationIds = new ArrayList<>();
+            for (int i = 0; i < profilesCount; i++) arrStationIds.add(i % 15);
+            assertEquals(profilesCount, router.profiles(date, arrStationIds, executor).size());
+        }
+        assertTrue(Router.WORKSPACES.idleCount() >= 1);
+        assertTrue(Router.WORKSPACES.idleCount() <= Runtime.getRuntime().availableProcessors());
+    }
+
+    private static List<List<Long>> fronts(Profile profile) {
+        List<List<Long>> fronts = new ArrayList<>();
+        for (int stationId = 0; stationId < profile.stationFront().size(); stationId++) {
+            List<Long> tuples = new ArrayList<>();
+            profile.forStation(stationId).forEach(tuples::add);
+            fronts.add(tuples);
+        }
+        return fronts;
+    }
+}
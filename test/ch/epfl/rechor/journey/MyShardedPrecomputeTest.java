@@ -0,0 +1,146 @@
+package ch.epfl.rechor.journey;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyShardedPrecomputeTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, Month.APRIL, 1);
+    private static final int STATIONS_COUNT = 20;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Processus de calcul d'une part, qui précalcule les profils d'un horaire synthétique. Il échoue
+     * (sans rien calculer) si un fichier "fail-<part>" existe dans le répertoire donné, qu'il supprime
+     * alors, ou à chaque fois si un fichier "always-<part>" y existe
+     */
+    static final class Worker {
+        public static void main(String[] args) throws Exception {
+            Path shardDirectory = Path.of(args[0]);
+            int shardIndex = Integer.parseInt(args[1]);
+            int shardCount = Integer.parseInt(args[2]);
+            LocalDate date = LocalDate.parse(args[3]);
+            Path failures = Path.of(args[4]);
+
+            if (Files.exists(failures.resolve("always-" + shardIndex))
+                    || Files.deleteIfExists(failures.resolve("fail-" + shardIndex))) {
+                System.exit(3);
+            }
+            new PrecomputeJob(timeTable(), new ProfileStore(shardDirectory, "v1"), 2, 1L << 28)
+                    .run(date, date, shardIndex, shardCount, r -> {});
+        }
+    }
+
+    @Test
+    void workersComputeAndMergeAllProfiles() throws IOException, InterruptedException {
+        ProfileStore store = new ProfileStore(directory.resolve("store"), "v1");
+        ShardedPrecompute coordinator = coordinator(store, 3, 2);
+
+        ShardedPrecompute.Report report = coordinator.run(DATE, DATE);
+        assertEquals(3, report.shardCount());
+        assertEquals(3, report.launchedWorkers());
+        assertEquals(STATIONS_COUNT, report.mergedProfiles());
+        for (int shardIndex = 0; shardIndex < 3; shardIndex++)
+            assertFalse(Files.exists(coordinator.shardDirectory(shardIndex)));
+
+        Router router = new Router(timeTable());
+        for (int arrStationId = 0; arrStationId < STATIONS_COUNT; arrStationId++) {
+            Profile expected = router.profile(DATE, arrStationId);
+            Profile loaded = store.load(router.timetable(), DATE, arrStationId).orElseThrow();
+            for (int stationId = 0; stationId < STATIONS_COUNT; stationId++)
+                assertEquals(tuples(expected.forStation(stationId)), tuples(loaded.forStation(stationId)));
+        }
+
+        // Les parts déjà stockées ne sont pas relancées
+        ShardedPrecompute.Report again = coordinator.run(DATE, DATE);
+        assertEquals(0, again.launchedWorkers());
+        assertEquals(0, again.mergedProfiles());
+    }
+
+    @Test
+    void failedWorkersAreRetried() throws IOException, InterruptedException {
+        ProfileStore store = new ProfileStore(directory.resolve("store"), "v1");
+        Files.createFile(directory.resolve("fail-1"));
+
+        ShardedPrecompute.Report report = coordinator(store, 2, 2).run(DATE, DATE);
+        assertEquals(3, report.launchedWorkers());
+        assertEquals(STATIONS_COUNT, report.mergedProfiles());
+        for (int arrStationId = 0; arrStationId < STATIONS_COUNT; arrStationId++)
+            assertTrue(store.contains(DATE, arrStationId));
+    }
+
+    @Test
+    void runThrowsWhenWorkerAlwaysFails() throws IOException, InterruptedException {
+        ProfileStore store = new ProfileStore(directory.resolve("store"), "v1");
+        Files.createFile(directory.resolve("always-0"));
+        ShardedPrecompute coordinator = coordinator(store, 2, 2);
+
+        assertThrows(IOException.class, () -> coordinator.run(DATE, DATE));
+
+        // Les profils de la part qui a réussi sont tout de même dans le stock final
+        for (int arrStationId = 0; arrStationId < STATIONS_COUNT; arrStationId++)
+            assertEquals(arrStationId % 2 == 1, store.contains(DATE, arrStationId));
+
+        // Une fois la panne réparée, seule la part qui a échoué est relancée
+        Files.delete(directory.resolve("always-0"));
+        ShardedPrecompute.Report report = coordinator.run(DATE, DATE);
+        assertEquals(1, report.launchedWorkers());
+        assertEquals(STATIONS_COUNT / 2, report.mergedProfiles());
+    }
+
+    @Test
+    void mergeKeepsExistingProfiles() throws IOException {
+        ProfileStore store = new ProfileStore(directory.resolve("store"), "v1");
+        ProfileStore other = new ProfileStore(directory.resolve("other"), "v1");
+        Router router = new Router(timeTable());
+        store.store(router.profile(DATE, 0));
+        other.store(router.profile(DATE, 0));
+        other.store(router.profile(DATE, 1));
+        new ProfileStore(directory.resolve("other"), "v2").store(router.profile(DATE, 2));
+
+        assertEquals(1, store.mergeFrom(directory.resolve("other")));
+        assertTrue(store.contains(DATE, 0) && store.contains(DATE, 1));
+        assertFalse(store.contains(DATE, 2));
+        assertFalse(other.contains(DATE, 0) || other.contains(DATE, 1));
+        assertEquals(0, store.mergeFrom(directory.resolve("missing")));
+    }
+
+    @Test
+    void constructorThrowsOnInvalidArguments() {
+        ProfileStore store = new ProfileStore(directory, "v1");
+        assertThrows(IllegalArgumentException.class, () -> coordinator(store, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> coordinator(store, 1, 0));
+    }
+
+    private ShardedPrecompute coordinator(ProfileStore store, int shardCount, int maxAttempts) {
+        return new ShardedPrecompute(store, directory.resolve("store"), STATIONS_COUNT, shardCount, maxAttempts,
+                (shardIndex, count, shardDirectory, firstDate, lastDate) -> {
+                    List<String> command = ShardedPrecompute.javaCommand(List.of("-Xmx256m"), Worker.class);
+                    command.addAll(List.of(shardDirectory.toString(), Integer.toString(shardIndex),
+                            Integer.toString(count), firstDate.toString(), directory.toString()));
+                    return command;
+                });
+    }
+
+    private static MyRouterTest.SyntheticTimeTable timeTable() {
+        return MyRouterTest.SyntheticTimeTable.generate(1, STATIONS_COUNT, 100, 0, 0);
+    }
+
+    private static List<Long> tuples(ParetoFront front) {
+        List<Long> tuples = new ArrayList<>();
+        front.forEach(tuples::add);
+        return tuples;
+    }
+}
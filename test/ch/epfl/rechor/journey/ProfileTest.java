@@ -302,6 +302,11 @@ class ProfileTest {
                     throw new IndexOutOfBoundsException();
                 }
 
+                @Override
+                public int departingTransferId(int position) {
+                    throw new IndexOutOfBoundsException();
+                }
+
                 @Override
                 public int size() {
                     return 0;
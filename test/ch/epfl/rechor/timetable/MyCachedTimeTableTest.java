@@ -0,0 +1,359 @@
+package ch.epfl.rechor.timetable;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyCachedTimeTableTest {
+
+    @Test
+    void cachedTimeTableLoadsSameDateOnlyOnce() {
+        var underlying = new CountingTimeTable();
+        var timeTable = new CachedTimeTable(underlying);
+        var date = LocalDate.of(2025, Month.APRIL, 1);
+
+        var trips = timeTable.tripsFor(date);
+        var connections = timeTable.connectionsFor(date);
+        for (var i = 0; i < 10; i += 1) {
+            assertSame(trips, timeTable.tripsFor(date));
+            assertSame(connections, timeTable.connectionsFor(date));
+        }
+        assertEquals(1, underlying.tripsLoads.get());
+        assertEquals(1, underlying.connectionsLoads.get());
+    }
+
+    @Test
+    void cachedTimeTableReloadsWhenDateChanges() {
+        var underlying = new CountingTimeTable();
+        var timeTable = new CachedTimeTable(underlying);
+        var date = LocalDate.of(2025, Month.APRIL, 1);
+
+        for (var i = 0; i < 5; i += 1) {
+            assertEquals(date.getDayOfMonth(), timeTable.tripsFor(date).size());
+            assertEquals(date.getDayOfMonth(), timeTable.connectionsFor(date).size());
+            date = date.plusDays(1);
+        }
+        assertEquals(5, underlying.connectionsLoads.get());
+    }
+
+    @Test
+    void cachedTimeTableIsSafeForConcurrentCallers() throws InterruptedException, ExecutionException {
+        var underlying = new CountingTimeTable();
+        var timeTable = new CachedTimeTable(underlying);
+        var date = LocalDate.of(2025, Month.APRIL, 1);
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (var i = 0; i < 64; i += 1) {
+            tasks.add(() -> timeTable.connectionsFor(date).size() == date.getDayOfMonth()
+                    && timeTable.tripsFor(date).size() == date.getDayOfMonth());
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (Future<Boolean> future : executor.invokeAll(tasks)) assertTrue(future.get());
+        }
+
+        // Tous les fils d'exécution ont partagé un seul et même chargement
+        assertEquals(1, underlying.tripsLoads.get());
+        assertEquals(1, underlying.connectionsLoads.get());
+    }
+
+    @Test
+    void cachedTimeTableGivesDataOfRequestedDateUnderContention()
+            throws InterruptedException, ExecutionException {
+        var timeTable = new CachedTimeTable(new CountingTimeTable());
+        var firstDate = LocalDate.of(2025, Month.APRIL, 1);
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (var i = 0; i < 64; i += 1) {
+            var date = firstDate.plusDays(i % 3);
+            tasks.add(() -> {
+                for (var j = 0; j < 100; j += 1) {
+                    if (timeTable.connectionsFor(date).size() != date.getDayOfMonth()
+                            || timeTable.tripsFor(date).size() != date.getDayOfMonth())
+                        return false;
+                }
+                return true;
+            });
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (Future<Boolean> future : executor.invokeAll(tasks)) assertTrue(future.get());
+        }
+    }
+
+    @Test
+    void cachedTimeTableKeepsSeveralDates() {
+        var underlying = new CountingTimeTable();
+        var timeTable = new CachedTimeTable(underlying, 3);
+        var today = LocalDate.of(2025, Month.APRIL, 10);
+
+        // La veille, le jour même et le lendemain, demandés en alternance, ne sont chargés qu'une fois
+        for (var i = 0; i < 10; i += 1) {
+            for (var date : List.of(today.minusDays(1), today, today.plusDays(1)))
+                assertEquals(date.getDayOfMonth(), timeTable.connectionsFor(date).size());
+        }
+        assertEquals(3, underlying.connectionsLoads.get());
+        assertEquals(3, underlying.tripsLoads.get());
+    }
+
+    @Test
+    void cachedTimeTableEvictsLeastRecentlyUsedDate() {
+        var underlying = new CountingTimeTable();
+        var timeTable = new CachedTimeTable(underlying, 2);
+        var first = LocalDate.of(2025, Month.APRIL, 1);
+        var second = first.plusDays(1);
+        var third = first.plusDays(2);
+
+        timeTable.connectionsFor(first);
+        timeTable.connectionsFor(second);
+        timeTable.connectionsFor(first);
+        timeTable.connectionsFor(third);
+        assertEquals(3, underlying.connectionsLoads.get());
+
+        // Le second jour, utilisé le moins récemment, a été retiré, mais pas le premier
+        timeTable.connectionsFor(first);
+        assertEquals(3, underlying.connectionsLoads.get());
+        timeTable.connectionsFor(second);
+        assertEquals(4, underlying.connectionsLoads.get());
+    }
+
+    @Test
+    void cachedTimeTableLoadsEachDateOnceUnderContention() throws InterruptedException, ExecutionException {
+        var underlying = new CountingTimeTable();
+        var timeTable = new CachedTimeTable(underlying, 4);
+        var firstDate = LocalDate.of(2025, Month.APRIL, 1);
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (var i = 0; i < 64; i += 1) {
+            var date = firstDate.plusDays(i % 4);
+            tasks.add(() -> timeTable.connectionsFor(date).size() == date.getDayOfMonth());
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (Future<Boolean> future : executor.invokeAll(tasks)) assertTrue(future.get());
+        }
+        assertEquals(4, underlying.connectionsLoads.get());
+        assertEquals(4, underlying.tripsLoads.get());
+    }
+
+    @Test
+    void cachedTimeTableRetriesFailedLoad() {
+        var underlying = new CountingTimeTable();
+        var timeTable = new CachedTimeTable(underlying);
+        var date = LocalDate.of(2025, Month.APRIL, 1);
+
+        underlying.failing = true;
+        assertThrows(IllegalStateException.class, () -> timeTable.connectionsFor(date));
+        underlying.failing = false;
+        assertEquals(date.getDayOfMonth(), timeTable.connectionsFor(date).size());
+    }
+
+    @Test
+    void cachedTimeTableConstructorThrowsOnInvalidDays() {
+        assertThrows(IllegalArgumentException.class, () -> new CachedTimeTable(new CountingTimeTable(), 0));
+    }
+
+    @Test
+    void cachedTimeTablePrefetchesAdjacentDays() {
+        var underlying = new CountingTimeTable();
+        var timeTable = new CachedTimeTable(underlying, 3, Runnable::run);
+        var today = LocalDate.of(2025, Month.APRIL, 10);
+
+        // Le premier accès charge le jour même, puis précharge la veille et le lendemain
+        timeTable.connectionsFor(today);
+        assertEquals(3, underlying.connectionsLoads.get());
+        assertEquals(List.of(today.plusDays(1), today.minusDays(1)), underlying.warmedUpDates);
+        assertEquals(new CachedTimeTable.PrefetchStats(0, 1, 2), timeTable.prefetchStats());
+
+        // Le lendemain est prêt, et son propre lendemain est préchargé à son tour ;
+        // la veille, préchargée mais jamais demandée, est retirée du cache à sa place
+        assertEquals(11, timeTable.tripsFor(today.plusDays(1)).size());
+        assertEquals(4, underlying.connectionsLoads.get());
+        assertEquals(new CachedTimeTable.PrefetchStats(1, 1, 3), timeTable.prefetchStats());
+
+        // Le jour même est encore dans le cache ; il laisse ensuite sa place aux deux voisins
+        // du surlendemain, préchargés lors de sa première demande
+        timeTable.connectionsFor(today);
+        assertEquals(4, underlying.connectionsLoads.get());
+        timeTable.connectionsFor(today.plusDays(2));
+        assertEquals(6, underlying.connectionsLoads.get());
+        assertEquals(new CachedTimeTable.PrefetchStats(2, 1, 5), timeTable.prefetchStats());
+    }
+
+    @Test
+    void cachedTimeTableIgnoresFailedPrefetch() {
+        var underlying = new CountingTimeTable();
+        var timeTable = new CachedTimeTable(underlying, 3, Runnable::run);
+        var today = LocalDate.of(2025, Month.APRIL, 10);
+
+        underlying.failingDate = today.plusDays(1);
+        assertEquals(10, timeTable.connectionsFor(today).size());
+        assertEquals(new CachedTimeTable.PrefetchStats(0, 1, 1), timeTable.prefetchStats());
+
+        // Le jour dont le préchargement a échoué est chargé normalement par la requête suivante
+        underlying.failingDate = null;
+        assertEquals(11, timeTable.connectionsFor(today.plusDays(1)).size());
+        assertEquals(new CachedTimeTable.PrefetchStats(0, 2, 2), timeTable.prefetchStats());
+    }
+
+    @Test
+    void cachedTimeTablePrefetchesInBackground() throws InterruptedException {
+        var underlying = new CountingTimeTable();
+        var today = LocalDate.of(2025, Month.APRIL, 10);
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            var timeTable = new CachedTimeTable(underlying, 3, executor);
+            timeTable.connectionsFor(today);
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+            assertEquals(11, timeTable.connectionsFor(today.plusDays(1)).size());
+            assertEquals(1, timeTable.prefetchStats().hits());
+
+            // Une fois l'exécuteur arrêté, les préchargements sont simplement abandonnés
+            assertEquals(11, timeTable.connectionsFor(today.plusDays(1)).size());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new CachedTimeTable(underlying, 2, Runnable::run));
+    }
+
+    @Test
+    void cachedTimeTableSharesDaysWithSameContent() {
+        var underlying = new CountingTimeTable();
+        underlying.contentByDayOfWeek = true;
+        var timeTable = new CachedTimeTable(underlying, 3);
+        var monday = LocalDate.of(2025, Month.APRIL, 7);
+
+        // Les jours d'une même semaine ont des contenus différents, ceux de la semaine suivante les mêmes
+        var connections = timeTable.connectionsFor(monday);
+        assertSame(connections, timeTable.connectionsFor(monday.plusWeeks(1)));
+        assertSame(connections, timeTable.connectionsFor(monday.plusWeeks(2)));
+        assertNotSame(connections, timeTable.connectionsFor(monday.plusDays(1)));
+        assertEquals(2, underlying.connectionsLoads.get());
+        assertEquals(timeTable.dayContentKey(monday), timeTable.dayContentKey(monday.plusWeeks(3)));
+    }
+
+    // Horaire dont les données d'un jour sont de taille égale au numéro du jour,
+    // et qui compte le nombre de chargements
+    private static final class CountingTimeTable implements TimeTable {
+        final AtomicInteger tripsLoads = new AtomicInteger();
+        final AtomicInteger connectionsLoads = new AtomicInteger();
+        volatile boolean failing = false;
+        volatile LocalDate failingDate = null;
+        volatile boolean contentByDayOfWeek = false;
+
+        @Override
+        public String dayContentKey(LocalDate date) {
+            return contentByDayOfWeek ? date.getDayOfWeek().toString() : TimeTable.super.dayContentKey(date);
+        }
+        final List<LocalDate> warmedUpDates = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void warmUp(LocalDate date) {
+            warmedUpDates.add(date);
+        }
+
+        @Override
+        public Stations stations() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StationAliases stationAliases() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Platforms platforms() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Routes routes() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Transfers transfers() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Trips tripsFor(LocalDate date) {
+            if (failing || date.equals(failingDate)) throw new IllegalStateException();
+            tripsLoads.incrementAndGet();
+            var size = date.getDayOfMonth();
+            return new Trips() {
+                @Override
+                public int routeId(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public String destination(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public Connections connectionsFor(LocalDate date) {
+            connectionsLoads.incrementAndGet();
+            var size = date.getDayOfMonth();
+            return new Connections() {
+                @Override
+                public int depStopId(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int depMins(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int arrStopId(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int arrMins(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int tripId(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int tripPos(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int nextConnectionId(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
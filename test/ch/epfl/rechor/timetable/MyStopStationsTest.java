@@ -0,0 +1,186 @@
+package ch.epfl.rechor.timetable;
+
+import ch.epfl.rechor.timetable.mapped.BufferedPlatforms;
+import ch.epfl.rechor.timetable.mapped.FileTimeTable;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyStopStationsTest {
+    private static final int STATIONS_COUNT = 30_000;
+    private static final int PLATFORMS_COUNT = 50_000;
+
+    @Test
+    void stopStationsMatchesStationId() {
+        var timeTable = new PlatformsTimeTable(STATIONS_COUNT, PLATFORMS_COUNT);
+        var stopStations = timeTable.stopStations();
+
+        assertEquals(STATIONS_COUNT + PLATFORMS_COUNT, stopStations.size());
+        for (var stopId = 0; stopId < stopStations.size(); stopId += 1)
+            assertEquals(timeTable.stationId(stopId), stopStations.stationOf(stopId));
+        assertThrows(IndexOutOfBoundsException.class, () -> stopStations.stationOf(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> stopStations.stationOf(stopStations.size()));
+    }
+
+    @Test
+    void stopStationsIsEmptyForEmptyTimeTable() {
+        assertEquals(0, new PlatformsTimeTable(0, 0).stopStations().size());
+    }
+
+    @Test
+    void stopStationsAreComparedByContent() {
+        var timeTable = new PlatformsTimeTable(100, 200);
+        assertEquals(timeTable.stopStations(), timeTable.stopStations());
+        assertEquals(timeTable.stopStations().hashCode(), timeTable.stopStations().hashCode());
+        assertNotEquals(timeTable.stopStations(), new PlatformsTimeTable(100, 199).stopStations());
+    }
+
+    @Test
+    void cachedTimeTableBuildsStopStationsOnlyOnce() {
+        var timeTable = new CachedTimeTable(new PlatformsTimeTable(100, 200));
+        var stopStations = timeTable.stopStations();
+        for (var i = 0; i < 10; i += 1) assertSame(stopStations, timeTable.stopStations());
+    }
+
+    @Test
+    void fileTimeTableBuildsStopStationsOnlyOnce() {
+        var source = new PlatformsTimeTable(100, 200);
+        var timeTable = new FileTimeTable(Path.of("."), List.of(), source.stations(), null,
+                source.platforms(), null, null);
+        var stopStations = timeTable.stopStations();
+        assertEquals(source.stopStations(), stopStations);
+        for (var i = 0; i < 10; i += 1) assertSame(stopStations, timeTable.stopStations());
+    }
+
+    @Test
+    void stopStationsBenchmark() {
+        // Simule les deux recherches de gare faites par liaison dans la boucle de Router.profile,
+        // sur un horaire mis en cache, comme celui utilisé par l'interface graphique
+        var timeTable = new CachedTimeTable(new PlatformsTimeTable(STATIONS_COUNT, PLATFORMS_COUNT));
+        var rng = new Random(2025);
+        var connectionsCount = 2_000_000;
+        var depStops = new int[connectionsCount];
+        var arrStops = new int[connectionsCount];
+        for (var i = 0; i < connectionsCount; i += 1) {
+            depStops[i] = rng.nextInt(STATIONS_COUNT + PLATFORMS_COUNT);
+            arrStops[i] = rng.nextInt(STATIONS_COUNT + PLATFORMS_COUNT);
+        }
+
+        // Préchauffage, pour que la mesure ne dépende pas de la compilation JIT
+        long checksum = 0;
+        for (var i = 0; i < 5; i += 1) {
+            checksum += scanWithStationId(timeTable, depStops, arrStops);
+            checksum += scanWithTable(timeTable, depStops, arrStops);
+        }
+
+        long stationIdNanos = Long.MAX_VALUE, tableNanos = Long.MAX_VALUE;
+        for (var i = 0; i < 5; i += 1) {
+            long start = System.nanoTime();
+            long expected = scanWithStationId(timeTable, depStops, arrStops);
+            stationIdNanos = Math.min(stationIdNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            long actual = scanWithTable(timeTable, depStops, arrStops);
+            tableNanos = Math.min(tableNanos, System.nanoTime() - start);
+
+            assertEquals(expected, actual);
+        }
+
+        System.out.printf("stationId : %.2f ns/liaison, table : %.2f ns/liaison (%d)%n",
+                (double) stationIdNanos / connectionsCount,
+                (double) tableNanos / connectionsCount,
+                checksum);
+    }
+
+    private static long scanWithStationId(TimeTable timeTable, int[] depStops, int[] arrStops) {
+        long sum = 0;
+        for (var i = 0; i < depStops.length; i += 1)
+            sum += timeTable.stationId(depStops[i]) + timeTable.stationId(arrStops[i]);
+        return sum;
+    }
+
+    private static long scanWithTable(TimeTable timeTable, int[] depStops, int[] arrStops) {
+        var stopStations = timeTable.stopStations();
+        long sum = 0;
+        for (var i = 0; i < depStops.length; i += 1)
+            sum += stopStations.stationOf(depStops[i]) + stopStations.stationOf(arrStops[i]);
+        return sum;
+    }
+
+    // Horaire dont les voies et quais sont stockés dans un tampon, comme ceux des fichiers de l'horaire
+    private static final class PlatformsTimeTable implements TimeTable {
+        private final int stationsCount;
+        private final Platforms platforms;
+
+        PlatformsTimeTable(int stationsCount, int platformsCount) {
+            this.stationsCount = stationsCount;
+            var buffer = ByteBuffer.allocate(platformsCount * 4);
+            for (var i = 0; i < platformsCount; i += 1) {
+                buffer.putShort((short) 0);
+                buffer.putShort((short) (i * 7 % stationsCount));
+            }
+            this.platforms = new BufferedPlatforms(List.of(""), buffer.flip());
+        }
+
+        @Override
+        public Stations stations() {
+            return new Stations() {
+                @Override
+                public String name(int id) {
+                    return "station" + id;
+                }
+
+                @Override
+                public double longitude(int id) {
+                    return 0;
+                }
+
+                @Override
+                public double latitude(int id) {
+                    return 0;
+                }
+
+                @Override
+                public int size() {
+                    return stationsCount;
+                }
+            };
+        }
+
+        @Override
+        public StationAliases stationAliases() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Platforms platforms() {
+            return platforms;
+        }
+
+        @Override
+        public Routes routes() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Transfers transfers() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Trips tripsFor(LocalDate date) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Connections connectionsFor(LocalDate date) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -15,6 +15,8 @@ class MyTransfersTest {
         private final int[] depStationIds = {0, 1, 0, 1, 2};
         private final int[] arrStationIds = {0, 0, 1, 2, 2};
         private final int[] durations     = {5, 4, 7, 3, 10};
+        // Index des transferts triés par gare de départ
+        private final int[] departingTransferIds = {0, 2, 1, 3, 4};
 
         // La taille correspond au nombre total de transferts.
         @Override
@@ -64,6 +66,13 @@ class MyTransfersTest {
             }
             throw new NoSuchElementException("Aucun transfert entre gare " + depStationId + " et gare " + arrStationId);
         }
+
+        @Override
+        public int departingTransferId(int position) {
+            if (position < 0 || position >= size())
+                throw new IndexOutOfBoundsException("Position invalide: " + position);
+            return departingTransferIds[position];
+        }
     };
 
     @Test
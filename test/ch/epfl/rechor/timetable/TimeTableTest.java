@@ -108,6 +108,11 @@ class TimeTableTest {
                     return 0;
                 }
 
+                @Override
+                public int departingTransferId(int position) {
+                    return 0;
+                }
+
                 @Override
                 public int size() {
                     return 0;
@@ -5,7 +5,11 @@ import ch.epfl.rechor.timetable.Transfers;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -159,4 +163,183 @@ class MyBufferedTransfersTest {
             transfers.minutesBetween(10, -1);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void fillMinutesToTest() {
+        Transfers transfers = new BufferedTransfers(createTestTransfersBuffer());
+
+        int[] walkMinutes = new int[21];
+        transfers.fillMinutesTo(20, walkMinutes);
+        for (int stationId = 0; stationId < walkMinutes.length; stationId++) {
+            int expected = stationId == 10 ? 5 : stationId == 12 ? 9 : -1;
+            assertEquals(expected, walkMinutes[stationId]);
+        }
+
+        // Les valeurs précédentes du tableau sont écrasées
+        transfers.fillMinutesTo(16, walkMinutes);
+        for (int stationId = 0; stationId < walkMinutes.length; stationId++)
+            assertEquals(stationId == 15 ? 2 : -1, walkMinutes[stationId]);
+    }
+
+    @Test
+    public void fillMinutesToKeepsFirstOfDuplicatePairs() {
+        byte[] bytes = new byte[] {
+                // Deux changements de la gare 10 à la gare 20, de 5 puis 7 minutes
+                0x00, 0x0A, 0x00, 0x14, 0x05,
+                0x00, 0x0A, 0x00, 0x14, 0x07,
+                // Changement de la gare 12 à la gare 20, de 9 minutes
+                0x00, 0x0C, 0x00, 0x14, 0x09,
+                // Deux changements de la gare 15 à la gare 20, de 4 puis 2 minutes
+                0x00, 0x0F, 0x00, 0x14, 0x04,
+                0x00, 0x0F, 0x00, 0x14, 0x02
+        };
+        Transfers transfers = new BufferedTransfers(ByteBuffer.wrap(bytes));
+
+        int[] walkMinutes = new int[21];
+        transfers.fillMinutesTo(20, walkMinutes);
+        for (int stationId : new int[]{10, 12, 15})
+            assertEquals(transfers.minutesBetween(stationId, 20), walkMinutes[stationId]);
+        assertEquals(5, walkMinutes[10]);
+        assertEquals(4, walkMinutes[15]);
+    }
+
+    @Test
+    public void fillMinutesToThrowsOnTooSmallArray() {
+        Transfers transfers = new BufferedTransfers(createTestTransfersBuffer());
+        assertThrows(IndexOutOfBoundsException.class, () -> transfers.fillMinutesTo(20, new int[11]));
+    }
+
+    @Test
+    public void minutesBetweenMatchesLinearSearchOnLargeTable() {
+        Random rng = new Random(2025);
+        int stationsCount = 40_000;
+        int transfersCount = 20_000;
+
+        // Changements triés par gare d'arrivée, avec des index de gare qui utilisent les 16 bits
+        int[] arr = new int[transfersCount];
+        for (int i = 0; i < transfersCount; i++) arr[i] = (int) (rng.nextInt(stationsCount) * 65_535L / stationsCount);
+        Arrays.sort(arr);
+        ByteBuffer buffer = ByteBuffer.allocate(transfersCount * 5);
+        int maxStationId = arr[transfersCount - 1];
+        int[] dep = new int[transfersCount];
+        int[] minutes = new int[transfersCount];
+        for (int i = 0; i < transfersCount; i++) {
+            dep[i] = Math.max(0, Math.min(maxStationId, arr[i] + rng.nextInt(7) - 3));
+            minutes[i] = rng.nextInt(256);
+            buffer.putShort((short) dep[i]).putShort((short) arr[i]).put((byte) minutes[i]);
+        }
+        Transfers transfers = new BufferedTransfers(buffer.flip());
+
+        for (int i = 0; i < transfersCount; i++) {
+            // Recherche linéaire du premier changement correspondant, comme le faisait minutesBetween
+            int expected = -1;
+            for (int j = 0; j < transfersCount && expected == -1; j++) {
+                if (dep[j] == dep[i] && arr[j] == arr[i]) expected = minutes[j];
+            }
+            assertEquals(expected, transfers.minutesBetween(dep[i], arr[i]));
+        }
+
+        int missing = 0;
+        for (int i = 0; i < 1_000; i++) {
+            int d = rng.nextInt(maxStationId + 1), a = arr[rng.nextInt(transfersCount)];
+            boolean exists = false;
+            for (int j = 0; j < transfersCount; j++) exists |= dep[j] == d && arr[j] == a;
+            if (!exists) {
+                missing++;
+                assertThrows(NoSuchElementException.class, () -> transfers.minutesBetween(d, a));
+            }
+        }
+        assertTrue(missing > 0);
+    }
+
+    @Test
+    public void departingFromTest() {
+        Transfers transfers = new BufferedTransfers(createTestTransfersBuffer());
+
+        // Un seul changement part de chacune des gares 10, 12 et 15, dans cet ordre
+        int[] expectedStarts = {0, 1, 2};
+        int[] depStations = {10, 12, 15};
+        for (int k = 0; k < depStations.length; k++) {
+            int range = transfers.departingFrom(depStations[k]);
+            assertEquals(expectedStarts[k], PackedRange.startInclusive(range));
+            assertEquals(1, PackedRange.length(range));
+            int transferId = transfers.departingTransferId(PackedRange.startInclusive(range));
+            assertEquals(depStations[k], transfers.depStationId(transferId));
+        }
+
+        // Aucun changement ne part des gares 0, 11 et 20
+        assertEquals(0, PackedRange.length(transfers.departingFrom(0)));
+        assertEquals(0, PackedRange.length(transfers.departingFrom(11)));
+        assertEquals(0, PackedRange.length(transfers.departingFrom(20)));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> transfers.departingFrom(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> transfers.departingTransferId(3));
+    }
+
+    @Test
+    public void departingFromMatchesDefaultImplementation() {
+        Random rng = new Random(7);
+        int transfersCount = 600;
+        int stationsCount = 80;
+
+        int[] arr = new int[transfersCount];
+        for (int i = 0; i < transfersCount; i++) arr[i] = rng.nextInt(stationsCount);
+        Arrays.sort(arr);
+        ByteBuffer buffer = ByteBuffer.allocate(transfersCount * 5);
+        for (int i = 0; i < transfersCount; i++)
+            buffer.putShort((short) rng.nextInt(stationsCount)).putShort((short) arr[i]).put((byte) rng.nextInt(60));
+        Transfers transfers = new BufferedTransfers(buffer.flip());
+
+        // Ordre de référence des changements par gare de départ (puis par index), obtenu par un tri
+        int[] byDepStation = IntStream.range(0, transfersCount).boxed()
+                .sorted(Comparator.<Integer>comparingInt(transfers::depStationId).thenComparingInt(i -> i))
+                .mapToInt(Integer::intValue).toArray();
+
+        // Changements utilisant l'implémentation par défaut de departingFrom, et l'ordre de référence
+        Transfers unindexed = new Transfers() {
+            @Override
+            public int depStationId(int id) {
+                return transfers.depStationId(id);
+            }
+
+            @Override
+            public int minutes(int id) {
+                return transfers.minutes(id);
+            }
+
+            @Override
+            public int arrivingAt(int stationId) {
+                return transfers.arrivingAt(stationId);
+            }
+
+            @Override
+            public int minutesBetween(int depStationId, int arrStationId) {
+                return transfers.minutesBetween(depStationId, arrStationId);
+            }
+
+            @Override
+            public int departingTransferId(int position) {
+                return byDepStation[position];
+            }
+
+            @Override
+            public int size() {
+                return transfers.size();
+            }
+        };
+
+        int visited = 0;
+        for (int stationId = 0; stationId < stationsCount; stationId++) {
+            int range = transfers.departingFrom(stationId);
+            assertEquals(unindexed.departingFrom(stationId), range);
+            for (int position = PackedRange.startInclusive(range); position < PackedRange.endExclusive(range); position++) {
+                int transferId = transfers.departingTransferId(position);
+                assertEquals(unindexed.departingTransferId(position), transferId);
+                assertEquals(stationId, transfers.depStationId(transferId));
+                visited++;
+            }
+        }
+        assertEquals(transfersCount, visited);
+    }
+}
+
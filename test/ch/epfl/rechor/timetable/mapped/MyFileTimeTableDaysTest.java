@@ -0,0 +1,62 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyFileTimeTableDaysTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2025, Month.APRIL, 7);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void dayContentKeyIdentifiesIdenticalDays() throws IOException {
+        writeDay(MONDAY, new byte[]{1, 2}, new byte[]{3, 4, 5}, new byte[]{6});
+        writeDay(MONDAY.plusDays(1), new byte[]{1, 2}, new byte[]{3, 4, 5}, new byte[]{6});
+        writeDay(MONDAY.plusDays(2), new byte[]{1, 2}, new byte[]{3, 4, 7}, new byte[]{6});
+        // Même concaténation des fichiers, mais découpage différent
+        writeDay(MONDAY.plusDays(3), new byte[]{1, 2, 3}, new byte[]{4, 5}, new byte[]{6});
+
+        FileTimeTable timeTable = timeTableIn(directory);
+        String key = timeTable.dayContentKey(MONDAY);
+        assertTrue(key.matches("[0-9a-f]{64}"));
+        assertEquals(key, timeTable.dayContentKey(MONDAY.plusDays(1)));
+        assertNotEquals(key, timeTable.dayContentKey(MONDAY.plusDays(2)));
+        assertNotEquals(key, timeTable.dayContentKey(MONDAY.plusDays(3)));
+        assertThrows(UncheckedIOException.class, () -> timeTable.dayContentKey(MONDAY.minusDays(1)));
+    }
+
+    @Test
+    void warmUpLoadsExistingDayAndThrowsOnMissingDay() throws IOException {
+        writeDay(MONDAY, new byte[]{1, 2}, new byte[]{3, 4, 5}, new byte[]{6});
+        FileTimeTable timeTable = timeTableIn(directory);
+        assertDoesNotThrow(() -> timeTable.warmUp(MONDAY));
+        assertThrows(UncheckedIOException.class, () -> timeTable.warmUp(MONDAY.plusDays(1)));
+    }
+
+    // Horaire sans gares ni voies ou quais, dont seules les données des jours sont lues
+    private static FileTimeTable timeTableIn(Path directory) {
+        return new FileTimeTable(directory, List.of(),
+                new BufferedStations(List.of(), ByteBuffer.allocate(0)), null,
+                new BufferedPlatforms(List.of(), ByteBuffer.allocate(0)), null, null);
+    }
+
+    private void writeDay(LocalDate date, byte[] trips, byte[] connections, byte[] successors) throws IOException {
+        Path dayDirectory = Files.createDirectories(directory.resolve(date.toString()));
+        Files.write(dayDirectory.resolve("trips.bin"), trips);
+        Files.write(dayDirectory.resolve("connections.bin"), connections);
+        Files.write(dayDirectory.resolve("connections-succ.bin"), successors);
+    }
+}